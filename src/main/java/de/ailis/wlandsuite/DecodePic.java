@@ -103,7 +103,7 @@ public class DecodePic extends ConvertProg
         }
 
         pic = Pic.read(input, this.width, this.height);
-        ImageIO.write(pic, this.format, output);
+        ImageIO.write(pic.toImage(), this.format, output);
     }
 
 
@@ -23,12 +23,10 @@
 
 package de.ailis.wlandsuite;
 
-import java.awt.Graphics2D;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
 
 import javax.imageio.ImageIO;
 
@@ -40,8 +38,8 @@ import de.ailis.wlandsuite.game.Game;
 import de.ailis.wlandsuite.game.blocks.GameMap;
 import de.ailis.wlandsuite.game.parts.TileMap;
 import de.ailis.wlandsuite.htds.Htds;
-import de.ailis.wlandsuite.image.EgaImage;
-import de.ailis.wlandsuite.pic.Pic;
+import de.ailis.wlandsuite.htds.HtdsTileset;
+import de.ailis.wlandsuite.image.PackedBitmap;
 import de.ailis.wlandsuite.sprites.Sprites;
 
 
@@ -66,37 +64,11 @@ public class ExtractMaps extends ExtractProg
     @Override
     public void extract(File input, File output) throws IOException
     {
-        Game game1, game2;
+        Game game;
         Htds htds1, htds2;
         Sprites sprites;
         InputStream stream;
 
-        // Read game 1
-        log.info("Reading game1");
-        stream = new FileInputStream(new File(input.getAbsolutePath()
-            + File.separatorChar + "game1"));
-        try
-        {
-            game1 = Game.read(stream);
-        }
-        finally
-        {
-            stream.close();
-        }
-
-        // Read game 2
-        log.info("Reading game2");
-        stream = new FileInputStream(new File(input.getAbsolutePath()
-            + File.separatorChar + "game2"));
-        try
-        {
-            game2 = Game.read(stream);
-        }
-        finally
-        {
-            stream.close();
-        }
-
         // Read tileset 1
         log.info("Reading allhtds1");
         stream = new FileInputStream(new File(input.getAbsolutePath()
@@ -138,53 +110,84 @@ public class ExtractMaps extends ExtractProg
 
         // Iterate over both game files
         int fileNo = 100;
-        for (Game game: new Game[] { game1, game2 })
+        for (String gameName: new String[] { "game1", "game2" })
         {
-            // Iterate over all maps of the current game file
-            for (GameMap gameMap: game.getMaps())
+            // Open the game file. The maps are read when they are needed
+            log.info("Reading " + gameName);
+            stream = new FileInputStream(new File(input.getAbsolutePath()
+                + File.separatorChar + gameName));
+            try
             {
-                log.info("Writing map " + fileNo);
-                int tilesetId = gameMap.getInfo().getTileset();
-                int size = gameMap.getMapSize();
-                EgaImage image = new EgaImage(size * 16, size * 16);
-                Graphics2D graphics = image.createGraphics();
-                List<Pic> tiles;
-
-                if (tilesetId < 4)
-                {
-                    tiles = htds1.getTilesets().get(tilesetId).getTiles();
-                }
-                else
-                {
-                    tiles = htds2.getTilesets().get(tilesetId - 4).getTiles();
-                }
-                TileMap map = gameMap.getTileMap();
+                game = Game.open(stream, 0, true);
+            }
+            finally
+            {
+                stream.close();
+            }
 
-                for (int y = 0; y < size; y++)
+            try
+            {
+                // Iterate over all maps of the current game file
+                for (int mapNo = 0; mapNo < game.getMapCount(); mapNo++)
                 {
-                    for (int x = 0; x < size; x++)
+                    GameMap gameMap = game.getMap(mapNo);
+                    log.info("Writing map " + fileNo);
+                    int tilesetId = gameMap.getInfo().getTileset();
+                    int size = gameMap.getMapSize();
+                    PackedBitmap image = new PackedBitmap(size * 16,
+                        size * 16, 4);
+                    HtdsTileset tileset;
+
+                    if (tilesetId < 4)
+                    {
+                        tileset = htds1.getTilesets().get(tilesetId);
+                    }
+                    else
                     {
-                        int tile = map.getTile(x, y);
+                        tileset = htds2.getTilesets().get(tilesetId - 4);
+                    }
 
-                        if (tile >= 10)
-                        {
-                            graphics.drawImage(tiles.get(tile - 10), x * 16,
-                                y * 16, null);
-                        }
-                        else
+                    // The tiles are drawn straight from the tile atlas
+                    PackedBitmap[] tiles = new PackedBitmap[tileset
+                        .getTileCount()];
+                    TileMap map = gameMap.getTileMap();
+                    byte[] row = new byte[size];
+
+                    for (int y = 0; y < size; y++)
+                    {
+                        map.getRow(y, row, 0);
+                        for (int x = 0; x < size; x++)
                         {
-                            graphics.drawImage(sprites.getSprites().get(tile),
-                                x * 16, y * 16, null);
+                            int tile = row[x] & 0xff;
+
+                            if (tile >= 10)
+                            {
+                                if (tiles[tile - 10] == null)
+                                {
+                                    tiles[tile - 10] = tileset
+                                        .getTile(tile - 10);
+                                }
+                                image.draw(tiles[tile - 10], x * 16, y * 16);
+                            }
+                            else
+                            {
+                                image.draw(sprites.getSprites().get(tile),
+                                    x * 16, y * 16);
+                            }
                         }
                     }
-                }
 
-                // Write the image to disk
-                File file = new File(String.format("%s%c%03d.png",
-                    new Object[] { output, File.separatorChar, fileNo }));
-                ImageIO.write(image, "PNG", file);
+                    // Write the image to disk
+                    File file = new File(String.format("%s%c%03d.png",
+                        new Object[] { output, File.separatorChar, fileNo }));
+                    ImageIO.write(image.toImage(), "PNG", file);
 
-                fileNo++;
+                    fileNo++;
+                }
+            }
+            finally
+            {
+                game.close();
             }
             fileNo = 200;
         }
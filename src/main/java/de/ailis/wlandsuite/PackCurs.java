@@ -37,7 +37,7 @@ import org.apache.commons.logging.LogFactory;
 import de.ailis.wlandsuite.cli.PackProg;
 import de.ailis.wlandsuite.curs.Curs;
 import de.ailis.wlandsuite.curs.Cursor;
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
@@ -62,8 +62,8 @@ public class PackCurs extends PackProg
     protected void pack(File directory, OutputStream output) throws IOException
     {
         List<Cursor> cursors;
-        EgaImage cursor;
-        EgaImage mask;
+        PackedBitmap cursor;
+        PackedBitmap mask;
         File file;
         int cursorNo;
 
@@ -78,7 +78,7 @@ public class PackCurs extends PackProg
             {
                 break;
             }
-            cursor = new EgaImage(ImageIO.read(file));
+            cursor = new PackedBitmap(ImageIO.read(file), 4);
             
             file = new File(String.format("%s%c%03d_mask.png", new Object[] {
                 directory.getPath(), File.separatorChar, cursorNo }));
@@ -86,7 +86,7 @@ public class PackCurs extends PackProg
             {
                 log.error("Mask file '" + file.getPath() + "' not found");
             }
-            mask = new EgaImage(ImageIO.read(file));
+            mask = new PackedBitmap(ImageIO.read(file), 4);
             cursors.add(new Cursor(cursor, mask));
             cursorNo++;
         }
@@ -31,6 +31,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -150,13 +151,14 @@ public class PackGame extends PackProg
             listNo++;
         }
 
+        // Encode the blocks on all available cores
         if (this.disk == -1)
         {
-            game.write(output);
+            game.write(output, ForkJoinPool.commonPool());
         }
         else
         {
-            game.write(output, this.disk);
+            game.write(output, this.disk, ForkJoinPool.commonPool());
         }
     }
 
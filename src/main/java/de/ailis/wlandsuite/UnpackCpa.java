@@ -89,9 +89,9 @@ public class UnpackCpa extends UnpackProg
         cpa = Cpa.read(input, this.width);
 
         // Save the base frame
-        ImageIO.write(cpa.getBaseFrame(), "PNG", new File(String.format(
-            "%s%c000.png",
-            new Object[] { output.getPath(), File.separatorChar })));
+        ImageIO.write(cpa.getBaseFrame().toImage(), "PNG", new File(String
+            .format("%s%c000.png", new Object[] { output.getPath(),
+                File.separatorChar })));
 
         // Save the animation frames and the animation.txt file
         writer = new PrintWriter(new FileWriter(output.getPath()
@@ -104,8 +104,8 @@ public class UnpackCpa extends UnpackProg
             frameNo = 1;
             for (CpaFrame frame: cpa.getFrames())
             {
-                ImageIO.write(frame.getPic(), "PNG", new File(String.format(
-                    "%s%c%03d.png", new Object[] { output.getPath(),
+                ImageIO.write(frame.getPic().toImage(), "PNG", new File(String
+                    .format("%s%c%03d.png", new Object[] { output.getPath(),
                         File.separatorChar, frameNo })));
                 writer.println(String.format("%5d", new Object[] { frame
                     .getDelay() }));
@@ -115,11 +115,11 @@ public class UnpackCurs extends UnpackProg
         {
             file = new File(String.format("%s%c%03d.png", new Object[] {
                 output.getPath(), File.separatorChar, cursorNo }));
-            ImageIO.write(cursor.getCursor(), "PNG", file);
+            ImageIO.write(cursor.getCursor().toImage(), "PNG", file);
 
             file = new File(String.format("%s%c%03d_mask.png", new Object[] {
                 output.getPath(), File.separatorChar, cursorNo }));
-            ImageIO.write(cursor.getMask(), "PNG", file);
+            ImageIO.write(cursor.getMask().toImage(), "PNG", file);
 
             cursorNo++;
         }
@@ -102,7 +102,7 @@ public class UnpackFnt extends UnpackProg
         {
             file = new File(String.format("%s%c%03d.png", new Object[] {
                 output.getPath(), File.separatorChar, charNo }));
-            ImageIO.write(fntChar, "PNG", file);
+            ImageIO.write(fntChar.toImage(), "PNG", file);
 
             charNo++;
         }
@@ -23,10 +23,14 @@
 
 package de.ailis.wlandsuite;
 
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,8 +52,41 @@ public class UnpackGame extends UnpackProg
 {
     /** The logger */
     private static final Log log = LogFactory.getLog(UnpackGame.class);
-        
-    
+
+    /** The number of input bytes to keep in memory (0 = no limit) */
+    private int window = 0;
+
+
+    /**
+     * @see de.ailis.wlandsuite.cli.CLIProg#processOption(int,
+     *      gnu.getopt.Getopt)
+     */
+
+    @Override
+    protected void processOption(int opt, Getopt getopt)
+    {
+        switch (opt)
+        {
+            case 'w':
+                try
+                {
+                    this.window = Integer.parseInt(getopt.getOptarg());
+                }
+                catch (final NumberFormatException e)
+                {
+                    this.window = -1;
+                }
+
+                // The spilling stream needs room for at least two bytes
+                if (this.window < 0 || this.window == 1)
+                {
+                    wrongUsage("Invalid window size: " + getopt.getOptarg());
+                }
+                break;
+        }
+    }
+
+
     /**
      * @see de.ailis.wlandsuite.cli.UnpackProg#unpack(java.io.InputStream,
      *      java.io.File)
@@ -63,8 +100,8 @@ public class UnpackGame extends UnpackProg
         File file;
         FileOutputStream outputStream;
 
-        // Parse the game file
-        game = Game.read(input);
+        // Parse the game file. The maps are decoded on all available cores
+        game = Game.read(input, this.window, ForkJoinPool.commonPool());
 
         // Write all maps as XML to disk
         mapNo = 0;
@@ -136,9 +173,15 @@ public class UnpackGame extends UnpackProg
     public static void main(String[] args)
     {
         UnpackGame app;
+        LongOpt[] longOpts;
+
+        longOpts = new LongOpt[1];
+        longOpts[0] = new LongOpt("window", LongOpt.REQUIRED_ARGUMENT, null, 'w');
+
         app = new UnpackGame();
         app.setHelp("help/unpackgame.txt");
         app.setProgName("unpackgame");
+        app.setLongOpts(longOpts);
         app.start(args);
     }
 }
@@ -107,8 +107,8 @@ public class UnpackHtds extends UnpackProg
             tileNo = 0;
             for (Pic tile: tileset.getTiles())
             {
-                ImageIO.write(tile, "PNG", new File(String.format("%s%c%03d.png",
-                    new Object[] { bankDir.getPath(),
+                ImageIO.write(tile.toImage(), "PNG", new File(String.format(
+                    "%s%c%03d.png", new Object[] { bankDir.getPath(),
                     File.separatorChar, tileNo})));
                 tileNo++;
             }
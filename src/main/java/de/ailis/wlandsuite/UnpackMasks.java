@@ -112,7 +112,7 @@ public class UnpackMasks extends UnpackProg
         {
             file = new File(String.format("%s%c%03d.png", new Object[] {
                 directory.getPath(), File.separatorChar, i }));
-            ImageIO.write(masks.get(i), "PNG", file);
+            ImageIO.write(masks.get(i).toImage(), "PNG", file);
         }
     }
 
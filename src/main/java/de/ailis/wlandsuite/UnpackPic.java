@@ -26,7 +26,6 @@ package de.ailis.wlandsuite;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -36,6 +35,7 @@ import java.io.PrintWriter;
 import javax.imageio.ImageIO;
 
 import de.ailis.wlandsuite.cli.UnpackProg;
+import de.ailis.wlandsuite.pic.Pic;
 import de.ailis.wlandsuite.pics.PicsAnimation;
 import de.ailis.wlandsuite.pics.PicsAnimationFrameSet;
 import de.ailis.wlandsuite.pics.PicsAnimationInstruction;
@@ -95,7 +95,7 @@ public class UnpackPic extends UnpackProg
         PicsAnimation pic = PicsAnimation.readHacked(input, this.width, this.height); 
 
         // Write the base frame
-        ImageIO.write(pic.getBaseFrame(), "PNG", new File(directory
+        ImageIO.write(pic.getBaseFrame().toImage(), "PNG", new File(directory
             .getPath()
             + File.separatorChar + "000.png"));
 
@@ -108,9 +108,9 @@ public class UnpackPic extends UnpackProg
             setDirectory.mkdirs();
 
             frameNo = 0;
-            for (BufferedImage frame: set.getFrames())
+            for (Pic frame: set.getFrames())
             {
-                ImageIO.write(frame, "PNG", new File(String.format(
+                ImageIO.write(frame.toImage(), "PNG", new File(String.format(
                     "%s%c%03d.png", new Object[] { setDirectory.getPath(),
                         File.separatorChar, frameNo + 1 })));
 
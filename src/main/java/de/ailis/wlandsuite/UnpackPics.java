@@ -26,7 +26,6 @@ package de.ailis.wlandsuite;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -39,6 +38,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import de.ailis.wlandsuite.cli.UnpackProg;
+import de.ailis.wlandsuite.pic.Pic;
 import de.ailis.wlandsuite.pics.PicsAnimation;
 import de.ailis.wlandsuite.pics.PicsAnimationFrameSet;
 import de.ailis.wlandsuite.pics.PicsAnimationInstruction;
@@ -105,9 +105,8 @@ public class UnpackPics extends UnpackProg
             picDirectory.mkdirs();
 
             // Write the base frame
-            ImageIO.write(pic.getBaseFrame(), "PNG", new File(picDirectory
-                .getPath()
-                + File.separatorChar + "000.png"));
+            ImageIO.write(pic.getBaseFrame().toImage(), "PNG", new File(
+                picDirectory.getPath() + File.separatorChar + "000.png"));
 
             frameSetNo = 0;
             for (PicsAnimationFrameSet set: pic.getFrameSets())
@@ -117,11 +116,12 @@ public class UnpackPics extends UnpackProg
                 setDirectory.mkdirs();
 
                 frameNo = 0;
-                for (BufferedImage frame: set.getFrames())
+                for (Pic frame: set.getFrames())
                 {
-                    ImageIO.write(frame, "PNG", new File(String.format(
-                        "%s%c%03d.png", new Object[] { setDirectory.getPath(),
-                            File.separatorChar, frameNo + 1 })));
+                    ImageIO.write(frame.toImage(), "PNG", new File(String
+                        .format("%s%c%03d.png", new Object[] {
+                            setDirectory.getPath(), File.separatorChar,
+                            frameNo + 1 })));
 
                     frameNo++;
                 }
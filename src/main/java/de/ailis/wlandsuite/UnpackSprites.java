@@ -112,7 +112,7 @@ public class UnpackSprites extends UnpackProg
         {
             file = new File(String.format("%s%c%03d.png", new Object[] {
                 directory.getPath(), File.separatorChar, i }));
-            ImageIO.write(images.get(i), "PNG", file);
+            ImageIO.write(images.get(i).toImage(), "PNG", file);
         }
     }
 
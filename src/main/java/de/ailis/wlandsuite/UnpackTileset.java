@@ -89,8 +89,8 @@ public class UnpackTileset extends UnpackProg
         tileNo = 0;
         for (Pic tile: tileset.getTiles())
         {
-            ImageIO.write(tile, "PNG", new File(String.format("%s%c%03d.png",
-                new Object[] { directory.getPath(),
+            ImageIO.write(tile.toImage(), "PNG", new File(String.format(
+                "%s%c%03d.png", new Object[] { directory.getPath(),
                 File.separatorChar, tileNo})));
             tileNo++;
         }
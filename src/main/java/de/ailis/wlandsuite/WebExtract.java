@@ -123,8 +123,8 @@ public class WebExtract extends ExtractProg
                     int i = 0;
                     for (final Pic tile: tileset.getTiles())
                     {
-                        g.drawImage(this.scaleFilter.scale(tile), i % 10 * 16
-                            * scale, i / 10 * 16 * scale, null);
+                        g.drawImage(this.scaleFilter.scale(tile.toImage()),
+                            i % 10 * 16 * scale, i / 10 * 16 * scale, null);
                         i++;
                     }
 
@@ -197,9 +197,9 @@ public class WebExtract extends ExtractProg
         for (int i = 0; i < 10; i++)
         {
             final BufferedImage sprite = this.scaleFilter.scale(sprites
-                .getSprites().get(i));
+                .getSprites().get(i).toImage());
             final BufferedImage mask = this.scaleFilter.scale(masks.getMasks()
-                .get(i));
+                .get(i).toImage());
             for (int x = 0; x < 16 * scale; x++)
             {
                 for (int y = 0; y < 16 * scale; y++)
@@ -257,7 +257,7 @@ public class WebExtract extends ExtractProg
                     .format("%d%02d", gameId, i));
                 animDirectory.mkdirs();
 
-                final TransparentEgaImage baseFrame = new TransparentEgaImage(this.scaleFilter.scale(animation.getBaseFrame()));
+                final TransparentEgaImage baseFrame = new TransparentEgaImage(this.scaleFilter.scale(animation.getBaseFrame().toImage()));
 
                 int layerId = 1;
                 for (final PicsAnimationFrameSet frameSet: animation
@@ -286,7 +286,7 @@ public class WebExtract extends ExtractProg
                             final int delay = instructions.get(
                                 (j + 1) % instructions.size()).getDelay();
                             final TransparentEgaImage frame = frameIndex == 0 ? baseFrame
-                                : new TransparentEgaImage(this.scaleFilter.scale(frames.get(frameIndex - 1)));
+                                : new TransparentEgaImage(this.scaleFilter.scale(frames.get(frameIndex - 1).toImage()));
                             gif.setDelay(delay * 50);
                             gif.addFrame(current.getDiff(frame));
                             current = frame;
@@ -38,6 +38,7 @@ import de.ailis.wlandsuite.huffman.HuffmanTree;
 import de.ailis.wlandsuite.msq.MsqHeader;
 import de.ailis.wlandsuite.msq.MsqType;
 import de.ailis.wlandsuite.pic.Pic;
+import de.ailis.wlandsuite.pic.PicDiff;
 
 
 /**
@@ -328,65 +329,7 @@ public class Cpa implements Serializable
 
     private byte[] buildDiff(final Pic base, final Pic frame, final Pic last)
     {
-        ByteArrayOutputStream stream;
-        byte[] bytes;
-        int width, height;
-        int x, y, i;
-        int p1, p2;
-        int offset;
-        boolean changed;
-
-        stream = new ByteArrayOutputStream();
-        try
-        {
-            try
-            {
-                width = base.getWidth();
-                height = base.getHeight();
-                bytes = new byte[4];
-                for (y = 0; y < height; y++)
-                {
-                    for (x = 0; x < width; x += 8)
-                    {
-                        changed = false;
-                        for (i = 0; i < 4; i++)
-                        {
-                            p1 = frame.getPixel(x + i * 2, y);
-                            p2 = frame.getPixel(x + i * 2 + 1, y);
-                            if ((base.getPixel(x + i * 2, y) != p1)
-                                || (base.getPixel(x + i * 2 + 1, y) != p2))
-                            {
-                                changed = true;
-                            }
-                            if ((last != null) && ((last.getPixel(x + i * 2, y) != p1)
-                                || (last.getPixel(x + i * 2 + 1, y) != p2)))
-                            {
-                                changed = true;
-                            }
-
-                            bytes[i] = (byte) ((p1 << 4) | p2);
-                        }
-                        if (changed)
-                        {
-                            offset = (y * 320 + x) / 8;
-                            stream.write(offset & 0xff);
-                            stream.write(offset >> 8);
-                            stream.write(bytes);
-                        }
-                    }
-                }
-                return stream.toByteArray();
-            }
-            finally
-            {
-                stream.close();
-            }
-        }
-        catch (final IOException e)
-        {
-            // Ignored. Can't happen
-            return null;
-        }
+        return PicDiff.getBlockRuns(base, frame, last);
     }
 
 
@@ -103,6 +103,7 @@ public class CpaFrame implements Serializable
         int i;
         int b;
         int x, y;
+        byte[] bytes;
 
         // Wrap the stream into a DataInputStream for easier access
         dataStream = new BitInputStreamWrapper(stream);
@@ -123,6 +124,7 @@ public class CpaFrame implements Serializable
         frame = new CpaFrame();
         frame.delay = delay;
         frame.pic = basePic.clone();
+        bytes = new byte[4];
 
         // Cycle over all animation frame parts
         while (true)
@@ -142,8 +144,12 @@ public class CpaFrame implements Serializable
             // Calculate the X and Y position
             y = (offset * 8) / 320;
             x = (offset * 8) % 320;
+            if (x + 8 > frame.pic.getWidth() || y >= frame.pic.getHeight())
+            {
+                throw new IOException("Invalid CPA frame offset: " + offset);
+            }
 
-            // Read the four update bytes and apply them to the picture
+            // Read the four update bytes and copy them into the picture
             for (i = 0; i < 4; i++)
             {
                 b = dataStream.readByte();
@@ -152,9 +158,10 @@ public class CpaFrame implements Serializable
                     throw new EOFException(
                         "Unexpected end of stream while reading CPA frame part");
                 }
-                frame.pic.setPixel(x + i * 2, y, b >> 4);
-                frame.pic.setPixel(x + i * 2 + 1, y, b & 0xf);
+                bytes[i] = (byte) b;
             }
+            frame.pic.putBytes(y * (frame.pic.getWidth() / 2) + x / 2, bytes,
+                0, 4);
         }
     }
 
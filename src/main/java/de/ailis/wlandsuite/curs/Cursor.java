@@ -28,11 +28,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
- * A cursor image.
+ * A cursor image. The cursor and its mask are stored in packed bitmaps with
+ * four bits per pixel.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
@@ -41,10 +42,10 @@ import de.ailis.wlandsuite.image.EgaImage;
 public class Cursor
 {
     /** The cursor image */
-    private final EgaImage cursor;
+    private final PackedBitmap cursor;
 
     /** The mask image */
-    private final EgaImage mask;
+    private final PackedBitmap mask;
 
 
     /**
@@ -56,7 +57,7 @@ public class Cursor
      *            The mask image
      */
 
-    public Cursor(final EgaImage cursor, final EgaImage mask)
+    public Cursor(final PackedBitmap cursor, final PackedBitmap mask)
     {
         this.cursor = cursor;
         this.mask = mask;
@@ -80,13 +81,13 @@ public class Cursor
     public static Cursor read(final InputStream stream, final int width, final int height)
         throws IOException
     {
-        EgaImage cursor, mask, image;
+        PackedBitmap cursor, mask, image;
         int b;
         int x, y;
         int type, bit, pixel;
 
-        cursor = new EgaImage(width, height);
-        mask = new EgaImage(width, height);
+        cursor = new PackedBitmap(width, height, 4);
+        mask = new PackedBitmap(width, height, 4);
         for (bit = 0; bit < 4; bit++)
         {
             for (y = 0; y < height; y++)
@@ -127,7 +128,7 @@ public class Cursor
 
     public void write(final OutputStream stream) throws IOException
     {
-        EgaImage image;
+        PackedBitmap image;
         int b;
         int x, y;
         int type, bit, pixel;
@@ -163,7 +164,7 @@ public class Cursor
      * @return The cursor image
      */
 
-    public EgaImage getCursor()
+    public PackedBitmap getCursor()
     {
         return this.cursor;
     }
@@ -175,7 +176,7 @@ public class Cursor
      * @return The mask image
      */
 
-    public EgaImage getMask()
+    public PackedBitmap getMask()
     {
         return this.mask;
     }
@@ -29,17 +29,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
- * A font character.
+ * A font character. The pixels are stored in a packed bitmap with four bits
+ * per pixel.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
-public class FntChar extends EgaImage
+public class FntChar extends PackedBitmap
 {
     /**
      * Constructor
@@ -47,7 +48,7 @@ public class FntChar extends EgaImage
 
     public FntChar()
     {
-        super(8, 8);
+        super(8, 8, 4);
     }
 
 
@@ -60,7 +61,7 @@ public class FntChar extends EgaImage
 
     public FntChar(final BufferedImage image)
     {
-        super(image);
+        super(image, 4);
     }
 
 
@@ -23,11 +23,16 @@
 
 package de.ailis.wlandsuite.game;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -60,13 +65,19 @@ public class Game
     private static final int TYPE_SHOPLIST = 2;
 
     /** The game maps */
-    private final List<GameMap> maps;
+    private List<GameMap> maps;
 
     /** The save game */
     private Savegame savegame;
 
+    /** The lazily read save game. Null if the game is not opened lazily */
+    private List<Savegame> lazySavegame;
+
     /** The shop item lists */
-    private final List<ShopItemList> shopItemLists;
+    private List<ShopItemList> shopItemLists;
+
+    /** The stream of a lazily opened game. Null if the game is not open */
+    private SeekableInputStream stream;
 
 
     /**
@@ -92,52 +103,289 @@ public class Game
      */
 
     public static Game read(final InputStream stream) throws IOException
+    {
+        return read(stream, 0);
+    }
+
+
+    /**
+     * Creates and returns a new Game object by reading it from the specified
+     * input stream. If the stream does not read a regular file then only the
+     * specified number of bytes is kept in memory and older bytes are spilled
+     * into a temporary file.
+     *
+     * @param stream
+     *            The input stream to read the game file from
+     * @param windowSize
+     *            The number of bytes to keep in memory or 0 for no limit
+     * @return The newly created Game object
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public static Game read(final InputStream stream, final int windowSize)
+        throws IOException
+    {
+        return read(stream, windowSize, null);
+    }
+
+
+    /**
+     * Creates and returns a new Game object by reading it from the specified
+     * input stream. The maps are decoded concurrently by the specified
+     * executor (For example a ForkJoinPool or a virtual thread executor) and
+     * are then assembled in block order. If the stream does not read a
+     * regular file then only the specified number of bytes is kept in memory
+     * and older bytes are spilled into a temporary file.
+     *
+     * @param stream
+     *            The input stream to read the game file from
+     * @param windowSize
+     *            The number of bytes to keep in memory or 0 for no limit
+     * @param executor
+     *            The executor which decodes the maps. Null to decode them
+     *            sequentially in the current thread
+     * @return The newly created Game object
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public static Game read(final InputStream stream, final int windowSize,
+        final ExecutorService executor) throws IOException
     {
         Game game;
-        SeekableInputStream gameStream;
-        int mapNo;
-        int listNo;
 
-        // Construct a new Game object
-        game = new Game();
+        game = open(stream, windowSize, false);
+        try
+        {
+            game.load(executor);
+        }
+        finally
+        {
+            game.close();
+        }
+        return game;
+    }
+
 
-        // Wrap the input stream with a seekable input stream for easier access
-        gameStream = new SeekableInputStream(stream);
+    /**
+     * Opens a game from the specified input stream. Only the MSQ blocks are
+     * indexed up front. The maps, the savegame and the shop item lists are
+     * read when they are accessed for the first time. So looking at a single
+     * map only costs the block index and the decoding of this map. Read blocks
+     * are cached either strongly or with soft references. Soft referenced
+     * blocks are read again from the stream when they have been garbage
+     * collected, so changes made to them may get lost. Use strong caching if
+     * you want to modify the game.
+     *
+     * The input stream is completely consumed by this method and can be
+     * closed afterwards. The game itself must be closed with close() when it
+     * is no longer needed. Blocks which were not read until then are no
+     * longer available. Call load() before closing the game to read all
+     * blocks.
+     *
+     * @param stream
+     *            The input stream to read the game file from
+     * @param windowSize
+     *            The number of bytes to keep in memory or 0 for no limit
+     * @param softCache
+     *            If read blocks are cached with soft references
+     * @return The opened game
+     * @throws IOException
+     *             When file operation fails.
+     */
 
-        // Cycle over all msq blocks
-        mapNo = 0;
-        listNo = 0;
-        for (final GameMsqBlock block: getMsqBlocks(gameStream))
+    public static Game open(final InputStream stream, final int windowSize,
+        final boolean softCache) throws IOException
+    {
+        Game game;
+        SeekableInputStream gameStream;
+
+        // Wrap the input stream with a seekable input stream for easier access
+        gameStream = SeekableInputStream.create(stream, windowSize);
+        try
+        {
+            game = new Game();
+            game.stream = gameStream;
+            indexBlocks(game, softCache);
+            return game;
+        }
+        catch (final IOException e)
         {
-            int type;
+            gameStream.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Indexes all MSQ blocks of the game stream. The blocks are sorted into
+     * lazy lists for maps, savegame and shop item lists.
+     *
+     * @param game
+     *            The game to fill
+     * @param softCache
+     *            If read blocks are cached with soft references
+     * @throws IOException
+     *             When file operation fails.
+     */
 
-            gameStream.seek(block.getOffset());
-            type = getType(gameStream, block.getSize());
-            gameStream.seek(block.getOffset());
+    private static void indexBlocks(final Game game, final boolean softCache)
+        throws IOException
+    {
+        SeekableInputStream gameStream;
+        LazyBlockList<GameMap> maps;
+        LazyBlockList<Savegame> savegame;
+        LazyBlockList<ShopItemList> shopItemLists;
+        int[] blocks;
+        int offset, size, savegameOffset, savegameSize;
+
+        gameStream = game.stream;
+        maps = new LazyBlockList<GameMap>(gameStream,
+            new LazyBlockList.BlockReader<GameMap>()
+            {
+                public GameMap read(final SeekableInputStream stream,
+                    final int blockSize, final int index) throws IOException
+                {
+                    log.info("Reading map " + index);
+                    return GameMap.read(stream, blockSize);
+                }
+            }, softCache);
+        savegame = new LazyBlockList<Savegame>(gameStream,
+            new LazyBlockList.BlockReader<Savegame>()
+            {
+                public Savegame read(final SeekableInputStream stream,
+                    final int blockSize, final int index) throws IOException
+                {
+                    log.info("Reading savegame");
+                    return Savegame.read(stream);
+                }
+            }, false);
+        shopItemLists = new LazyBlockList<ShopItemList>(gameStream,
+            new LazyBlockList.BlockReader<ShopItemList>()
+            {
+                public ShopItemList read(final SeekableInputStream stream,
+                    final int blockSize, final int index) throws IOException
+                {
+                    log.info("Reading shop item list " + index);
+                    return ShopItemList.read(stream);
+                }
+            }, softCache);
 
-            switch (type)
+        // Cycle over all msq blocks
+        savegameOffset = -1;
+        savegameSize = 0;
+        blocks = MsqBlockScanner.scan(gameStream);
+        for (int i = 0; i < blocks.length; i += 2)
+        {
+            offset = blocks[i];
+            size = blocks[i + 1];
+            gameStream.seek(offset);
+            switch (getType(gameStream, size))
             {
                 case TYPE_MAP:
-                    log.info("Reading map " + mapNo);
-                    mapNo++;
-                    game.maps.add(GameMap.read(gameStream, block.getSize()));
+                    maps.addBlock(offset, size);
                     break;
 
                 case TYPE_SAVEGAME:
-                    log.info("Reading savegame");
-                    game.savegame = Savegame.read(gameStream);
+                    savegameOffset = offset;
+                    savegameSize = size;
                     break;
 
                 case TYPE_SHOPLIST:
-                    log.info("Reading shop item list " + listNo);
-                    listNo++;
-                    game.shopItemLists.add(ShopItemList.read(gameStream));
+                    shopItemLists.addBlock(offset, size);
                     break;
             }
         }
 
-        // Read the whole game file into
-        return game;
+        // Only the last savegame block counts
+        if (savegameOffset != -1)
+        {
+            savegame.addBlock(savegameOffset, savegameSize);
+        }
+
+        game.maps = maps;
+        game.lazySavegame = savegame;
+        game.shopItemLists = shopItemLists;
+    }
+
+
+    /**
+     * Reads all blocks of a lazily opened game which have not been read yet.
+     * Afterwards the game no longer needs its stream. Nothing happens if the
+     * game was not opened lazily or if it was already loaded.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void load() throws IOException
+    {
+        load(null);
+    }
+
+
+    /**
+     * Reads all blocks of a lazily opened game which have not been read yet.
+     * The maps are decoded concurrently by the specified executor. Afterwards
+     * the game no longer needs its stream. Nothing happens if the game was not
+     * opened lazily or if it was already loaded.
+     *
+     * @param executor
+     *            The executor which decodes the maps. Null to decode them
+     *            sequentially in the current thread
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void load(final ExecutorService executor) throws IOException
+    {
+        if (this.maps instanceof LazyBlockList<?>)
+        {
+            if (executor != null)
+            {
+                ((LazyBlockList<GameMap>) this.maps).load(executor);
+            }
+            else
+            {
+                ((LazyBlockList<GameMap>) this.maps).load();
+            }
+            this.maps = new ArrayList<GameMap>(this.maps);
+        }
+        if (this.lazySavegame instanceof LazyBlockList<?>)
+        {
+            if (this.savegame == null)
+            {
+                ((LazyBlockList<Savegame>) this.lazySavegame).load();
+                getSavegame();
+            }
+            this.lazySavegame = null;
+        }
+        if (this.shopItemLists instanceof LazyBlockList<?>)
+        {
+            ((LazyBlockList<ShopItemList>) this.shopItemLists).load();
+            this.shopItemLists = new ArrayList<ShopItemList>(
+                this.shopItemLists);
+        }
+    }
+
+
+    /**
+     * Closes the stream of a lazily opened game. Blocks which have not been
+     * read until now are no longer available. Nothing happens if the game
+     * was not opened lazily.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void close() throws IOException
+    {
+        if (this.stream != null)
+        {
+            this.stream.close();
+            this.stream = null;
+        }
     }
 
 
@@ -153,7 +401,28 @@ public class Game
 
     public void write(final OutputStream stream) throws IOException
     {
-        write(stream, this.maps.size() == 20 ? 0 : 1);
+        write(stream, null);
+    }
+
+
+    /**
+     * Writes the game file to the specified output stream. The disk number
+     * is determined automatically by looking at the number of maps. The
+     * blocks are encoded concurrently by the specified executor.
+     *
+     * @param stream
+     *            The output stream
+     * @param executor
+     *            The executor which encodes the blocks. Null to encode them
+     *            sequentially in the current thread
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void write(final OutputStream stream, final ExecutorService executor)
+        throws IOException
+    {
+        write(stream, this.maps.size() == 20 ? 0 : 1, executor);
     }
 
 
@@ -170,28 +439,125 @@ public class Game
 
     public void write(final OutputStream stream, final int disk) throws IOException
     {
-        int i;
+        write(stream, disk, null);
+    }
+
 
-        // Write the maps
-        i = 0;
+    /**
+     * Writes the game file to the specified output stream. Each block is
+     * encoded into its own byte array by the specified executor and only the
+     * concatenation of the encoded blocks is done in order. Warnings of a
+     * block are logged when the block is written, so they appear in the same
+     * order as with sequential encoding.
+     *
+     * @param stream
+     *            The output stream
+     * @param disk
+     *            The disk id (0 or 1)
+     * @param executor
+     *            The executor which encodes the blocks. Null to encode them
+     *            sequentially in the current thread
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void write(final OutputStream stream, final int disk,
+        final ExecutorService executor) throws IOException
+    {
+        List<String> names;
+        List<List<String>> warnings;
+        List<Callable<byte[]>> tasks;
+        List<Future<byte[]>> results;
+        Future<byte[]> result;
+        final Savegame savegame;
+
+        names = new ArrayList<String>();
+        warnings = new ArrayList<List<String>>();
+        tasks = new ArrayList<Callable<byte[]>>();
+
+        // Prepare the maps
         for (final GameMap map: this.maps)
         {
-            log.info("Writing map " + i);
-            map.write(stream, disk);
-            i++;
+            final List<String> mapWarnings = new ArrayList<String>(2);
+
+            names.add("Writing map " + names.size());
+            warnings.add(mapWarnings);
+            tasks.add(new Callable<byte[]>()
+            {
+                public byte[] call() throws IOException
+                {
+                    ByteArrayOutputStream byteStream;
+
+                    byteStream = new ByteArrayOutputStream();
+                    map.write(byteStream, disk, mapWarnings);
+                    return byteStream.toByteArray();
+                }
+            });
         }
 
-        // Write the savegame
-        log.info("Writing savegame");
-        this.savegame.write(stream, disk);
+        // Prepare the savegame
+        savegame = getSavegame();
+        names.add("Writing savegame");
+        warnings.add(new ArrayList<String>(0));
+        tasks.add(new Callable<byte[]>()
+        {
+            public byte[] call() throws IOException
+            {
+                ByteArrayOutputStream byteStream;
+
+                byteStream = new ByteArrayOutputStream();
+                savegame.write(byteStream, disk);
+                return byteStream.toByteArray();
+            }
+        });
+
+        // Prepare the shop item lists
+        for (int i = 0; i < this.shopItemLists.size(); i++)
+        {
+            final ShopItemList list = this.shopItemLists.get(i);
+
+            names.add("Writing shop item list " + i);
+            warnings.add(new ArrayList<String>(0));
+            tasks.add(new Callable<byte[]>()
+            {
+                public byte[] call() throws IOException
+                {
+                    ByteArrayOutputStream byteStream;
+
+                    byteStream = new ByteArrayOutputStream();
+                    list.write(byteStream, disk);
+                    return byteStream.toByteArray();
+                }
+            });
+        }
 
-        // Write the shop item lists
-        i = 0;
-        for (final ShopItemList list: this.shopItemLists)
+        // Encode the blocks and write them in order
+        results = new ArrayList<Future<byte[]>>(tasks.size());
+        try
+        {
+            for (final Callable<byte[]> task: tasks)
+            {
+                results.add(executor == null ? new FutureTask<byte[]>(task)
+                    : executor.submit(task));
+            }
+            for (int i = 0; i < results.size(); i++)
+            {
+                log.info(names.get(i));
+                result = results.get(i);
+                if (executor == null)
+                {
+                    ((FutureTask<byte[]>) result).run();
+                }
+                stream.write(LazyBlockList.await(result));
+                for (final String warning: warnings.get(i))
+                {
+                    log.warn(warning);
+                }
+            }
+        }
+        finally
         {
-            log.info("Writing shop item list " + i);
-            list.write(stream, disk);
-            i++;
+            LazyBlockList.cancel(results);
         }
     }
 
@@ -221,98 +587,29 @@ public class Game
 
 
     /**
-     * Returns the game structure. The structure consists of a list of
-     * GameMsqBlock objects which describes the offset and size of each MSQ
-     * block. The offsets and sizes are determined by searching for the msq[0-1]
-     * header. This will break if such a text appears in the middle of a MSQ
-     * block. But because this is quite a uncommon string and because of the
-     * encryption and compression this will most likely not happen.
+     * Returns the number of maps in the game file.
      *
-     * @param stream
-     *            The stream to read the game data from
-     * @return The game file structure
-     * @throws IOException
-     *             When the game file could not be read
+     * @return The number of maps
      */
 
-    private static List<GameMsqBlock> getMsqBlocks(final InputStream stream)
-        throws IOException
+    public int getMapCount()
     {
-        List<GameMsqBlock> blocks;
-        int nextOffset;
-        int offset;
-        int disk;
-        int stage;
-        int b;
-        byte[] tmp;
-        String header;
-
-        blocks = new ArrayList<GameMsqBlock>(23);
-
-        // Read the first header to validate the file and get the disk
-        // number
-        offset = 0;
-        tmp = new byte[4];
-        stream.read(tmp);
-        header = new String(tmp);
-        if (!header.equals("msq0") && !header.equals("msq1"))
-        {
-            throw new IOException("No msq header found in stream");
-        }
-        disk = tmp[3];
-        nextOffset = offset;
-        offset = 4;
-
-        // Read the rest of the file and scan for msq blocks.
-        stage = 0;
-        while ((b = stream.read()) != -1)
-        {
-            switch (stage)
-            {
-                case 0:
-                    if (b == 'm')
-                    {
-                        stage = 1;
-                    }
-                    break;
-
-                case 1:
-                    if (b == 's')
-                    {
-                        stage = 2;
-                    }
-                    else
-                    {
-                        stage = 0;
-                    }
-                    break;
+        return this.maps.size();
+    }
 
-                case 2:
-                    if (b == 'q')
-                    {
-                        stage = 3;
-                    }
-                    else
-                    {
-                        stage = 0;
-                    }
-                    break;
 
-                case 3:
-                    if (b == disk)
-                    {
-                        blocks.add(new GameMsqBlock(nextOffset, offset - 3
-                            - nextOffset));
-                        nextOffset = offset - 3;
-                    }
-                    stage = 0;
-                    break;
-            }
-            offset++;
-        }
+    /**
+     * Returns the map with the specified index. A lazily opened game only
+     * reads this single map if it was not read before.
+     *
+     * @param index
+     *            The map index
+     * @return The map
+     */
 
-        blocks.add(new GameMsqBlock(nextOffset, offset - nextOffset));
-        return blocks;
+    public GameMap getMap(final int index)
+    {
+        return this.maps.get(index);
     }
 
 
@@ -443,13 +740,18 @@ public class Game
 
 
     /**
-     * Returns the savegame.
+     * Returns the savegame. A lazily opened game reads it on first access.
      *
      * @return The savegame
      */
 
     public Savegame getSavegame()
     {
+        if (this.savegame == null && this.lazySavegame != null
+            && !this.lazySavegame.isEmpty())
+        {
+            this.savegame = this.lazySavegame.get(0);
+        }
         return this.savegame;
     }
 
@@ -464,5 +766,6 @@ public class Game
     public void setSavegame(final Savegame savegame)
     {
         this.savegame = savegame;
+        this.lazySavegame = null;
     }
 }
@@ -0,0 +1,575 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.ailis.wlandsuite.common.exceptions.GameException;
+import de.ailis.wlandsuite.io.BufferSeekableInputStream;
+import de.ailis.wlandsuite.io.SeekableInputStream;
+
+
+/**
+ * A list of game blocks which are read from a game stream when they are
+ * accessed for the first time. The list only knows the offset and size of each
+ * MSQ block until then. Read blocks are cached either with strong references
+ * or with soft references. Soft referenced blocks may be garbage collected
+ * when memory gets low and are then read again on the next access. So changes
+ * made to a soft referenced block can get lost. Blocks which are added or set
+ * are always referenced strongly.
+ *
+ * Because each MSQ block is self-contained all missing blocks can also be
+ * decoded concurrently with the load() method. Each block is then read from
+ * its own read-only view of the game stream. Blocks read by load() are always
+ * referenced strongly.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ * @param <T>
+ *            The block type
+ */
+
+final class LazyBlockList<T> extends AbstractList<T>
+{
+    /**
+     * Reads a single block from a game stream.
+     *
+     * @param <T>
+     *            The block type
+     */
+
+    interface BlockReader<T>
+    {
+        /**
+         * Reads the block from the specified stream which is already
+         * positioned at the start of the block.
+         *
+         * @param stream
+         *            The game stream
+         * @param size
+         *            The size of the MSQ block
+         * @param index
+         *            The index of the block in the list
+         * @return The block
+         * @throws IOException
+         *             When file operation fails.
+         */
+
+        T read(SeekableInputStream stream, int size, int index)
+            throws IOException;
+    }
+
+    /** The game stream */
+    private final SeekableInputStream stream;
+
+    /** The block reader */
+    private final BlockReader<T> reader;
+
+    /** If read blocks are cached with soft references */
+    private final boolean softCache;
+
+    /** The block offsets. -1 for blocks which are not read from the stream */
+    private int[] offsets;
+
+    /** The block sizes */
+    private int[] sizes;
+
+    /** The cached blocks. Either the block itself or a soft reference */
+    private Object[] blocks;
+
+    /** The number of blocks in the list */
+    private int size;
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The game stream
+     * @param reader
+     *            The block reader
+     * @param softCache
+     *            If read blocks are cached with soft references
+     */
+
+    LazyBlockList(final SeekableInputStream stream,
+        final BlockReader<T> reader, final boolean softCache)
+    {
+        this.stream = stream;
+        this.reader = reader;
+        this.softCache = softCache;
+        this.offsets = new int[8];
+        this.sizes = new int[8];
+        this.blocks = new Object[8];
+    }
+
+
+    /**
+     * Adds a MSQ block which is read from the game stream when it is accessed
+     * for the first time.
+     *
+     * @param offset
+     *            The offset of the MSQ block in the game stream
+     * @param blockSize
+     *            The size of the MSQ block
+     */
+
+    void addBlock(final int offset, final int blockSize)
+    {
+        insert(this.size, offset, blockSize, null);
+    }
+
+
+    /**
+     * @see java.util.AbstractList#get(int)
+     */
+
+    @Override
+    public T get(final int index)
+    {
+        T block;
+
+        checkIndex(index);
+        block = getCached(index);
+        if (block == null)
+        {
+            block = readBlock(index);
+            cache(index, block);
+        }
+        return block;
+    }
+
+
+    /**
+     * Reads all blocks which are not cached yet one after the other in the
+     * current thread. Unlike get() this method reports a block which can't be
+     * read with the I/O exception of the block reader.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    void load() throws IOException
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            if (getCached(i) == null)
+            {
+                this.blocks[i] = read(i);
+            }
+        }
+    }
+
+
+    /**
+     * Reads all blocks which are not cached yet. The blocks are decoded
+     * concurrently by the specified executor and are stored in block order
+     * when all of them have been decoded. If decoding of a block fails then
+     * the remaining tasks are cancelled and the exception of the first failed
+     * block is thrown.
+     *
+     * @param executor
+     *            The executor which decodes the blocks
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    void load(final ExecutorService executor) throws IOException
+    {
+        List<Future<T>> results;
+        Future<T> result;
+
+        results = new ArrayList<Future<T>>(this.size);
+        try
+        {
+            for (int i = 0; i < this.size; i++)
+            {
+                results.add(getCached(i) == null ? submit(executor, i) : null);
+            }
+            for (int i = 0; i < this.size; i++)
+            {
+                result = results.get(i);
+                if (result != null)
+                {
+                    this.blocks[i] = await(result);
+                }
+            }
+        }
+        finally
+        {
+            cancel(results);
+        }
+    }
+
+
+    /**
+     * Waits for the specified future and returns its result. Exceptions
+     * thrown by the task are rethrown unwrapped. This includes I/O exceptions
+     * which a ForkJoinPool has wrapped into plain runtime exceptions.
+     *
+     * @param <R>
+     *            The result type
+     * @param future
+     *            The future to wait for
+     * @return The result
+     * @throws IOException
+     *             When the task failed with an I/O error or when the current
+     *             thread was interrupted.
+     */
+
+    static <R> R await(final Future<R> future) throws IOException
+    {
+        Throwable cause;
+
+        try
+        {
+            return future.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for "
+                + "MSQ block");
+        }
+        catch (final ExecutionException e)
+        {
+            cause = e.getCause();
+            while (cause != null && cause.getClass() == RuntimeException.class
+                && cause.getCause() instanceof Exception)
+            {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw new GameException(e.getCause());
+        }
+    }
+
+
+    /**
+     * Cancels all specified futures which are not done yet. Null entries are
+     * ignored.
+     *
+     * @param futures
+     *            The futures to cancel
+     */
+
+    static void cancel(final List<? extends Future<?>> futures)
+    {
+        for (final Future<?> future: futures)
+        {
+            if (future != null)
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+
+    /**
+     * Submits the decoding of the block with the specified index to the
+     * executor.
+     *
+     * @param executor
+     *            The executor
+     * @param index
+     *            The block index
+     * @return The future result of the decoding
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private Future<T> submit(final ExecutorService executor, final int index)
+        throws IOException
+    {
+        final ByteBuffer view;
+        final int blockSize;
+
+        view = getView(index);
+        blockSize = this.sizes[index];
+        return executor.submit(new Callable<T>()
+        {
+            public T call() throws IOException
+            {
+                SeekableInputStream stream;
+
+                stream = new BufferSeekableInputStream(view);
+                try
+                {
+                    return LazyBlockList.this.reader.read(stream, blockSize,
+                        index);
+                }
+                finally
+                {
+                    stream.close();
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Returns a read-only view of the MSQ block with the specified index. If
+     * the game stream is buffer based then the view shares its content.
+     * Otherwise the block is copied out of the game stream.
+     *
+     * @param index
+     *            The block index
+     * @return The read-only view of the MSQ block
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private ByteBuffer getView(final int index) throws IOException
+    {
+        byte[] bytes;
+        int offset, read;
+
+        synchronized (this.stream)
+        {
+            if (this.stream instanceof BufferSeekableInputStream)
+            {
+                return ((BufferSeekableInputStream) this.stream).slice(
+                    this.offsets[index], this.sizes[index]);
+            }
+            bytes = new byte[this.sizes[index]];
+            this.stream.seek(this.offsets[index]);
+            offset = 0;
+            while (offset < bytes.length)
+            {
+                read = this.stream.read(bytes, offset, bytes.length - offset);
+                if (read == -1)
+                {
+                    throw new IOException("Unexpected end of game stream");
+                }
+                offset += read;
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    }
+
+
+    /**
+     * @see java.util.AbstractList#set(int, java.lang.Object)
+     */
+
+    @Override
+    public T set(final int index, final T element)
+    {
+        T previous;
+
+        checkIndex(index);
+        previous = getCached(index);
+        this.offsets[index] = -1;
+        this.blocks[index] = element;
+        return previous;
+    }
+
+
+    /**
+     * @see java.util.AbstractList#add(int, java.lang.Object)
+     */
+
+    @Override
+    public void add(final int index, final T element)
+    {
+        if (index < 0 || index > this.size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                + this.size);
+        }
+        insert(index, -1, 0, element);
+        this.modCount++;
+    }
+
+
+    /**
+     * @see java.util.AbstractCollection#size()
+     */
+
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+
+    /**
+     * Inserts a new entry into the list.
+     *
+     * @param index
+     *            The index of the new entry
+     * @param offset
+     *            The offset of the MSQ block or -1 if not read from stream
+     * @param blockSize
+     *            The size of the MSQ block
+     * @param block
+     *            The block or null if not yet read
+     */
+
+    private void insert(final int index, final int offset,
+        final int blockSize, final T block)
+    {
+        int capacity;
+
+        if (this.size == this.offsets.length)
+        {
+            capacity = this.size << 1;
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.sizes = Arrays.copyOf(this.sizes, capacity);
+            this.blocks = Arrays.copyOf(this.blocks, capacity);
+        }
+        System.arraycopy(this.offsets, index, this.offsets, index + 1,
+            this.size - index);
+        System.arraycopy(this.sizes, index, this.sizes, index + 1, this.size
+            - index);
+        System.arraycopy(this.blocks, index, this.blocks, index + 1, this.size
+            - index);
+        this.offsets[index] = offset;
+        this.sizes[index] = blockSize;
+        this.blocks[index] = block;
+        this.size++;
+    }
+
+
+    /**
+     * Caches the specified block.
+     *
+     * @param index
+     *            The block index
+     * @param block
+     *            The block to cache
+     */
+
+    private void cache(final int index, final T block)
+    {
+        this.blocks[index] = this.softCache ? new SoftReference<T>(block)
+            : block;
+    }
+
+
+    /**
+     * Returns the cached block with the specified index. Returns null if the
+     * block was not read yet or if it was garbage collected.
+     *
+     * @param index
+     *            The block index
+     * @return The cached block or null
+     */
+
+    @SuppressWarnings("unchecked")
+    private T getCached(final int index)
+    {
+        Object block;
+
+        block = this.blocks[index];
+        if (block instanceof SoftReference<?>)
+        {
+            return ((SoftReference<T>) block).get();
+        }
+        return (T) block;
+    }
+
+
+    /**
+     * Reads the block with the specified index from the game stream. I/O
+     * errors are wrapped into a game exception because get() can't throw
+     * checked exceptions.
+     *
+     * @param index
+     *            The block index
+     * @return The block
+     */
+
+    private T readBlock(final int index)
+    {
+        try
+        {
+            return read(index);
+        }
+        catch (final IOException e)
+        {
+            throw new GameException("Unable to read MSQ block at offset "
+                + this.offsets[index] + ": " + e, e);
+        }
+    }
+
+
+    /**
+     * Reads the block with the specified index from the game stream.
+     *
+     * @param index
+     *            The block index
+     * @return The block
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private T read(final int index) throws IOException
+    {
+        synchronized (this.stream)
+        {
+            this.stream.seek(this.offsets[index]);
+            return this.reader.read(this.stream, this.sizes[index], index);
+        }
+    }
+
+
+    /**
+     * Validates the specified index.
+     *
+     * @param index
+     *            The index to check
+     */
+
+    private void checkIndex(final int index)
+    {
+        if (index < 0 || index >= this.size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                + this.size);
+        }
+    }
+}
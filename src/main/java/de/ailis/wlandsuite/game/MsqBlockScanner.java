@@ -0,0 +1,252 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+/**
+ * Scans a game file for the boundaries of its MSQ blocks. Each block starts
+ * with the signature "msq" followed by the disk number. The scanner examines
+ * eight bytes at once and only looks at single bytes when one of them is an
+ * "m" which may start a signature. The found blocks are returned as a
+ * primitive array which contains the offset and the size of each block.
+ *
+ * This will break if the signature appears in the middle of a MSQ block. But
+ * because this is quite an uncommon string and because of the encryption and
+ * compression this will most likely not happen.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class MsqBlockScanner
+{
+    /** Access to byte arrays as little endian longs */
+    private static final VarHandle LONGS = MethodHandles
+        .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** The lowest bit of each byte in a long */
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    /** The highest bit of each byte in a long */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** An "m" in each byte of a long */
+    private static final long M_BYTES = LOW_BITS * 'm';
+
+    /** The size of the chunks read from the stream */
+    private static final int CHUNK_SIZE = 65536;
+
+    /** The disk number which follows the "msq" of a signature */
+    private final int disk;
+
+    /** The found blocks. Offset and size for each block */
+    private int[] blocks;
+
+    /** The number of used entries in the blocks array */
+    private int used;
+
+    /** The offset of the current block */
+    private int blockOffset;
+
+    /** The offset of the next byte to scan */
+    private int offset;
+
+    /** The number of signature bytes already matched */
+    private int stage;
+
+
+    /**
+     * Constructor
+     *
+     * @param disk
+     *            The disk number (The byte following "msq")
+     * @param offset
+     *            The offset of the first byte to scan. The first block is
+     *            expected to start at offset 0
+     */
+
+    public MsqBlockScanner(final int disk, final int offset)
+    {
+        this.disk = disk;
+        this.offset = offset;
+        this.blocks = new int[46];
+    }
+
+
+    /**
+     * Reads the whole stream and returns the MSQ blocks found in it. The
+     * stream must start with a MSQ block.
+     *
+     * @param stream
+     *            The input stream
+     * @return The offset and the size of each block
+     * @throws IOException
+     *             When file operation fails or stream does not start with a
+     *             MSQ block
+     */
+
+    public static int[] scan(final InputStream stream) throws IOException
+    {
+        MsqBlockScanner scanner;
+        byte[] chunk;
+        String header;
+        int read;
+
+        // Read the first header to validate the file and get the disk
+        // number
+        chunk = new byte[CHUNK_SIZE];
+        stream.read(chunk, 0, 4);
+        header = new String(chunk, 0, 4);
+        if (!header.equals("msq0") && !header.equals("msq1"))
+        {
+            throw new IOException("No msq header found in stream");
+        }
+
+        // Read the rest of the stream and scan for msq blocks
+        scanner = new MsqBlockScanner(chunk[3], 4);
+        while ((read = stream.read(chunk)) != -1)
+        {
+            scanner.scan(chunk, 0, read);
+        }
+        return scanner.getBlocks();
+    }
+
+
+    /**
+     * Scans the next bytes of the game file.
+     *
+     * @param bytes
+     *            The bytes to scan
+     * @param start
+     *            The index of the first byte to scan
+     * @param length
+     *            The number of bytes to scan
+     */
+
+    public void scan(final byte[] bytes, final int start, final int length)
+    {
+        int index, end;
+        long word;
+
+        index = start;
+        end = start + length;
+        while (index < end)
+        {
+            // Skip eight bytes at once if none of them is an "m"
+            if (this.stage == 0 && index + 8 <= end)
+            {
+                word = (long) LONGS.get(bytes, index) ^ M_BYTES;
+                if (((word - LOW_BITS) & ~word & HIGH_BITS) == 0)
+                {
+                    index += 8;
+                    this.offset += 8;
+                    continue;
+                }
+            }
+            scanByte(bytes[index] & 0xff);
+            index++;
+        }
+    }
+
+
+    /**
+     * Feeds a single byte into the signature matcher. A partial match which
+     * is broken by a byte restarts the matcher at the next byte.
+     *
+     * @param b
+     *            The byte to scan
+     */
+
+    private void scanByte(final int b)
+    {
+        switch (this.stage)
+        {
+            case 0:
+                if (b == 'm') this.stage = 1;
+                break;
+
+            case 1:
+                this.stage = b == 's' ? 2 : 0;
+                break;
+
+            case 2:
+                this.stage = b == 'q' ? 3 : 0;
+                break;
+
+            default:
+                if (b == this.disk)
+                {
+                    addBlock(this.offset - 3);
+                }
+                this.stage = 0;
+        }
+        this.offset++;
+    }
+
+
+    /**
+     * Ends the current block at the specified offset and starts a new one
+     * there.
+     *
+     * @param end
+     *            The offset of the end of the current block
+     */
+
+    private void addBlock(final int end)
+    {
+        if (this.used == this.blocks.length)
+        {
+            this.blocks = Arrays.copyOf(this.blocks, this.used * 2);
+        }
+        this.blocks[this.used++] = this.blockOffset;
+        this.blocks[this.used++] = end - this.blockOffset;
+        this.blockOffset = end;
+    }
+
+
+    /**
+     * Returns the found blocks. The last block ends at the last scanned byte.
+     * The returned array contains the offset and the size of each block, so
+     * block n has the offset at index n * 2 and the size at index n * 2 + 1.
+     *
+     * @return The offsets and sizes of the blocks
+     */
+
+    public int[] getBlocks()
+    {
+        int[] result;
+
+        result = Arrays.copyOf(this.blocks, this.used + 2);
+        result[this.used] = this.blockOffset;
+        result[this.used + 1] = this.offset - this.blockOffset;
+        return result;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+
+/**
+ * Block implementation of the rotating XOR cipher used by the MSQ blocks of
+ * the game files. The key is advanced by 0x1f (modulo 256) with each byte so
+ * the key stream is periodic and fully determined by the first key byte. It is
+ * precomputed once and whole arrays are processed eight bytes at a time.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class RotatingXorCipher
+{
+    /** The key increment */
+    private static final int STEP = 0x1f;
+
+    /** The multiplicative inverse of the key increment modulo 256 */
+    private static final int INVERSE_STEP = 0xdf;
+
+    /** Mask to select every second byte of a long */
+    private static final long LOW_BYTES = 0x00ff00ff00ff00ffL;
+
+    /** Multiplier to add up the four 16 bit lanes of a long */
+    private static final long LANES = 0x0001000100010001L;
+
+    /** Access to byte arrays as little endian longs */
+    private static final VarHandle LONGS = MethodHandles
+        .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The key stream starting with key 0. Twice as long as the period so
+     * eight bytes can be read at any position of the period.
+     */
+    private static final byte[] KEYSTREAM = new byte[512];
+
+    static
+    {
+        for (int i = 0; i < KEYSTREAM.length; i++)
+        {
+            KEYSTREAM[i] = (byte) (i * STEP);
+        }
+    }
+
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+
+    private RotatingXorCipher()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Returns the key which is used after the specified number of bytes have
+     * been processed.
+     *
+     * @param key
+     *            The current key
+     * @param length
+     *            The number of processed bytes
+     * @return The new key
+     */
+
+    public static int nextKey(final int key, final int length)
+    {
+        return (key + STEP * length) & 0xff;
+    }
+
+
+    /**
+     * Decrypts the specified part of the byte array in place and returns the
+     * sum of the decrypted bytes. The checksum of the MSQ block is updated by
+     * subtracting this sum.
+     *
+     * @param bytes
+     *            The bytes to decrypt
+     * @param offset
+     *            The offset of the first byte to decrypt
+     * @param length
+     *            The number of bytes to decrypt
+     * @param key
+     *            The key of the first byte
+     * @return The sum of the decrypted bytes
+     */
+
+    public static int decrypt(final byte[] bytes, final int offset,
+        final int length, final int key)
+    {
+        int start, sum, i, max;
+        long value;
+
+        start = (key * INVERSE_STEP) & 0xff;
+        sum = 0;
+        i = offset;
+        max = offset + length;
+        for (; i + 8 <= max; i += 8)
+        {
+            value = (long) LONGS.get(bytes, i)
+                ^ (long) LONGS.get(KEYSTREAM, (start + i - offset) & 0xff);
+            LONGS.set(bytes, i, value);
+            sum += sum(value);
+        }
+        for (; i < max; i++)
+        {
+            bytes[i] ^= KEYSTREAM[(start + i - offset) & 0xff];
+            sum += bytes[i] & 0xff;
+        }
+        return sum;
+    }
+
+
+    /**
+     * Encrypts the specified part of the byte array in place.
+     *
+     * @param bytes
+     *            The bytes to encrypt
+     * @param offset
+     *            The offset of the first byte to encrypt
+     * @param length
+     *            The number of bytes to encrypt
+     * @param key
+     *            The key of the first byte
+     */
+
+    public static void encrypt(final byte[] bytes, final int offset,
+        final int length, final int key)
+    {
+        int start, i, max;
+
+        start = (key * INVERSE_STEP) & 0xff;
+        i = offset;
+        max = offset + length;
+        for (; i + 8 <= max; i += 8)
+        {
+            LONGS.set(bytes, i, (long) LONGS.get(bytes, i)
+                ^ (long) LONGS.get(KEYSTREAM, (start + i - offset) & 0xff));
+        }
+        for (; i < max; i++)
+        {
+            bytes[i] ^= KEYSTREAM[(start + i - offset) & 0xff];
+        }
+    }
+
+
+    /**
+     * Returns the sum of the bytes in the specified part of the byte array.
+     *
+     * @param bytes
+     *            The bytes to add up
+     * @param offset
+     *            The offset of the first byte
+     * @param length
+     *            The number of bytes
+     * @return The sum of the bytes
+     */
+
+    public static int sum(final byte[] bytes, final int offset,
+        final int length)
+    {
+        int sum, i, max;
+
+        sum = 0;
+        i = offset;
+        max = offset + length;
+        for (; i + 8 <= max; i += 8)
+        {
+            sum += sum((long) LONGS.get(bytes, i));
+        }
+        for (; i < max; i++)
+        {
+            sum += bytes[i] & 0xff;
+        }
+        return sum;
+    }
+
+
+    /**
+     * Returns the sum of the eight bytes of a long.
+     *
+     * @param value
+     *            The long value
+     * @return The sum of the bytes
+     */
+
+    private static int sum(final long value)
+    {
+        long lanes;
+
+        lanes = (value & LOW_BYTES) + ((value >>> 8) & LOW_BYTES);
+        return (int) ((lanes * LANES) >>> 48);
+    }
+}
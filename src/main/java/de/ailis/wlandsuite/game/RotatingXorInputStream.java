@@ -117,6 +117,46 @@ public class RotatingXorInputStream extends BitInputStream
     }
 
 
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int read, count;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        // Read the crypted bytes directly into the buffer
+        read = 0;
+        while (read < len)
+        {
+            count = this.bitStream.read(b, off + read, len - read);
+            if (count == -1) break;
+            read += count;
+        }
+        if (read == 0)
+        {
+            return -1;
+        }
+
+        // Decrypt the bytes in place and update the checksum
+        this.checksum = (this.checksum
+            - RotatingXorCipher.decrypt(b, off, read, this.enc)) & 0xffff;
+        this.enc = RotatingXorCipher.nextKey(this.enc, read);
+        return read;
+    }
+
+
     /**
      * Returns the current checksum.
      *
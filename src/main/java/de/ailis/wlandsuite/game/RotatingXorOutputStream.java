@@ -69,6 +69,17 @@ public class RotatingXorOutputStream extends OutputStream
     }
 
 
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+    {
+        this.stream.write(b, off, len);
+    }
+
+
     /**
      * @see java.io.OutputStream#flush()
      */
@@ -78,19 +89,13 @@ public class RotatingXorOutputStream extends OutputStream
     {
         byte[] bytes;
         int enc;
-        int checksum;
-        int endChecksum = 0;
+        int endChecksum;
 
         // Get the written bytes
         bytes = this.stream.toByteArray();
 
         // Calculate the end checksum
-        checksum = 0;
-        for (byte b: bytes)
-        {
-            checksum = (checksum - (b & 0xff)) & 0xffff;
-            endChecksum = checksum;
-        }
+        endChecksum = -RotatingXorCipher.sum(bytes, 0, bytes.length) & 0xffff;
 
         // Write the end checksum
         this.origStream.write(endChecksum & 0xff);
@@ -100,14 +105,8 @@ public class RotatingXorOutputStream extends OutputStream
         enc = (endChecksum & 0xff) ^ (endChecksum >> 8);
 
         // Write the encrypted bytes
-        for (byte b: bytes)
-        {
-            // Write encrypted byte
-            this.origStream.write(b ^ enc);
-
-            // Update encryptor
-            enc = (enc + 0x1f) % 0x100;
-        }
+        RotatingXorCipher.encrypt(bytes, 0, bytes.length, enc);
+        this.origStream.write(bytes);
     }
 
 
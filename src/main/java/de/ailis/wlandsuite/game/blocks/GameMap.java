@@ -23,13 +23,18 @@
 
 package de.ailis.wlandsuite.game.blocks;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -38,7 +43,7 @@ import org.dom4j.Document;
 import org.dom4j.Element;
 
 import de.ailis.wlandsuite.common.exceptions.GameException;
-import de.ailis.wlandsuite.game.RotatingXorInputStream;
+import de.ailis.wlandsuite.game.RotatingXorCipher;
 import de.ailis.wlandsuite.game.RotatingXorOutputStream;
 import de.ailis.wlandsuite.game.parts.Action;
 import de.ailis.wlandsuite.game.parts.ActionClassMap;
@@ -53,6 +58,7 @@ import de.ailis.wlandsuite.game.parts.SpecialAction;
 import de.ailis.wlandsuite.game.parts.SpecialActionTable;
 import de.ailis.wlandsuite.game.parts.Strings;
 import de.ailis.wlandsuite.game.parts.TileMap;
+import de.ailis.wlandsuite.io.BufferSeekableInputStream;
 import de.ailis.wlandsuite.io.SeekableInputStream;
 import de.ailis.wlandsuite.io.SeekableOutputStream;
 import de.ailis.wlandsuite.utils.StringUtils;
@@ -74,6 +80,22 @@ public class GameMap extends GameBlock implements Serializable
     /** The logger */
     private static final Log log = LogFactory.getLog(GameMap.class);
 
+    /** The number of decrypted bytes needed to determine the map size */
+    private static final int SNIFF_SIZE = 6189;
+
+    /** The mask selecting the fixed bytes of the tile map header */
+    private static final long TILES_HEADER_MASK = 0xffff0000ffffffffL;
+
+    /** The lowest bit of each byte in a long */
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    /** The highest bit of each byte in a long */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** Access to byte arrays as little endian longs */
+    private static final VarHandle LONGS = MethodHandles
+        .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
     /** The map size */
     private int mapSize;
 
@@ -171,50 +193,58 @@ public class GameMap extends GameBlock implements Serializable
     {
         byte[] headerBytes;
         String header;
-        RotatingXorInputStream xorStream;
         byte[] bytes;
         int mapSize;
         int encSize;
+        int sniffSize;
+        int key;
         int tilemapOffset;
         GameMap gameMap;
-        long startOffset;
 
         // Read the MSQ block header and validate it
-        headerBytes = new byte[4];
-        stream.read(headerBytes);
-        header = new String(headerBytes, "ASCII");
+        headerBytes = new byte[6];
+        readFully(stream, headerBytes, 0, headerBytes.length);
+        header = new String(headerBytes, 0, 4, "ASCII");
         if (!header.equals("msq0") && !header.equals("msq1"))
         {
             throw new IOException("No MSQ block header found at stream");
         }
 
-        // Get the starting offset
-        startOffset = stream.tell();
-
-        // Read/Decrypt beginning of the MSQ block body
-        bytes = new byte[6189];
-        xorStream = new RotatingXorInputStream(stream);
-        xorStream.read(bytes);
+        // Read the whole block body at once
+        bytes = new byte[msqBlockSize - 6];
+        readFully(stream, bytes, 0, bytes.length);
 
-        // Determine the map size and initialize the map with it
+        // Decrypt the beginning of the block which is needed to determine
+        // the map size and the encryption size
+        key = (headerBytes[4] ^ headerBytes[5]) & 0xff;
+        sniffSize = Math.min(SNIFF_SIZE, bytes.length);
+        RotatingXorCipher.decrypt(bytes, 0, sniffSize, key);
         mapSize = determineMapSize(bytes);
-
-        // Determine the encryption size
         encSize = determineEncryptionSize(bytes, mapSize);
+        if (encSize > bytes.length)
+        {
+            throw new GameException("Invalid encryption size: " + encSize);
+        }
 
-        // Read/Decrypt the whole block
-        bytes = new byte[msqBlockSize - 6];
-        stream.seek(startOffset);
-        xorStream = new RotatingXorInputStream(stream);
-        xorStream.read(bytes, 0, encSize);
-        stream.read(bytes, encSize, bytes.length - encSize);
+        // Decrypt the rest of the encrypted part or encrypt the bytes again
+        // which were decrypted too much. The cipher is symmetric.
+        if (encSize > sniffSize)
+        {
+            RotatingXorCipher.decrypt(bytes, sniffSize, encSize - sniffSize,
+                RotatingXorCipher.nextKey(key, sniffSize));
+        }
+        else
+        {
+            RotatingXorCipher.encrypt(bytes, encSize, sniffSize - encSize,
+                RotatingXorCipher.nextKey(key, encSize));
+        }
 
         // Determine the tiles offset
         tilemapOffset = determineTilesOffset(bytes, mapSize);
 
-        // Create the byte array stream and begin parsing the input
-        final SeekableInputStream blockStream = new SeekableInputStream(
-            new ByteArrayInputStream(bytes));
+        // Parse the decrypted block directly from the byte array
+        final SeekableInputStream blockStream = new BufferSeekableInputStream(
+            ByteBuffer.wrap(bytes));
         try
         {
             // Create the Game Map
@@ -233,6 +263,40 @@ public class GameMap extends GameBlock implements Serializable
     }
 
 
+    /**
+     * Reads the specified number of bytes from the stream into the array.
+     *
+     * @param stream
+     *            The input stream
+     * @param bytes
+     *            The array to read the bytes into
+     * @param offset
+     *            The offset in the array
+     * @param length
+     *            The number of bytes to read
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private static void readFully(final InputStream stream, final byte[] bytes,
+        final int offset, final int length) throws IOException
+    {
+        int read, count;
+
+        read = 0;
+        while (read < length)
+        {
+            count = stream.read(bytes, offset + read, length - read);
+            if (count == -1)
+            {
+                throw new EOFException(
+                    "Unexpected end of stream while reading MSQ block");
+            }
+            read += count;
+        }
+    }
+
+
     /**
      * Reads the map data from the given stream. This method is internally
      * called by the read and read and readHacked method.
@@ -369,13 +433,16 @@ public class GameMap extends GameBlock implements Serializable
      *            The output stream
      * @param compressTilemap
      *            If the tile map should be compressed
+     * @param warnings
+     *            The list to add warnings to or null to log them directly
      * @return The central directory
      * @throws IOException
      *             When file operation fails.
      */
 
     private CentralDirectory writeMapData(final OutputStream stream,
-        final boolean compressTilemap) throws IOException
+        final boolean compressTilemap, final List<String> warnings)
+        throws IOException
     {
         SeekableOutputStream plainStream;
         CentralDirectory centralDirectory;
@@ -455,7 +522,7 @@ public class GameMap extends GameBlock implements Serializable
         {
             if (plainStream.tell() > this.tilemapOffset)
             {
-                log.warn("Too much data before tile map. Fixing "
+                warn(warnings, "Too much data before tile map. Fixing "
                     + "offsets in wl.exe is needed to run this game file");
             }
             else
@@ -473,9 +540,8 @@ public class GameMap extends GameBlock implements Serializable
         {
             if (plainStream.tell() > this.msqSize - 6)
             {
-                log
-                    .warn("Tilemap too large. Fixing offsets in wl.exe is needed "
-                        + "to run this game file");
+                warn(warnings, "Tilemap too large. Fixing offsets in wl.exe "
+                    + "is needed to run this game file");
             }
             else
             {
@@ -494,6 +560,28 @@ public class GameMap extends GameBlock implements Serializable
     }
 
 
+    /**
+     * Adds a warning to the specified list or logs it if there is no list.
+     *
+     * @param warnings
+     *            The list to add the warning to or null to log it
+     * @param warning
+     *            The warning
+     */
+
+    private static void warn(final List<String> warnings, final String warning)
+    {
+        if (warnings == null)
+        {
+            log.warn(warning);
+        }
+        else
+        {
+            warnings.add(warning);
+        }
+    }
+
+
     /**
      * Writes the map to the specified output stream.
      *
@@ -507,6 +595,29 @@ public class GameMap extends GameBlock implements Serializable
 
     public void write(final OutputStream stream, final int disk)
         throws IOException
+    {
+        write(stream, disk, null);
+    }
+
+
+    /**
+     * Writes the map to the specified output stream. Warnings about map data
+     * which does not fit into the original block are added to the specified
+     * list instead of being logged. This allows encoding multiple maps
+     * concurrently while still reporting the warnings in a fixed order.
+     *
+     * @param stream
+     *            The output stream
+     * @param disk
+     *            The disk id (0 or 1)
+     * @param warnings
+     *            The list to add warnings to or null to log them directly
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void write(final OutputStream stream, final int disk,
+        final List<String> warnings) throws IOException
     {
         ByteArrayOutputStream byteStream;
         RotatingXorOutputStream xorStream;
@@ -515,7 +626,7 @@ public class GameMap extends GameBlock implements Serializable
         int stringsOffset;
 
         byteStream = new ByteArrayOutputStream();
-        centralDirectory = writeMapData(byteStream, true);
+        centralDirectory = writeMapData(byteStream, true, warnings);
         bytes = byteStream.toByteArray();
         stringsOffset = centralDirectory.getStringsOffset();
 
@@ -550,7 +661,7 @@ public class GameMap extends GameBlock implements Serializable
         int tilemapOffset;
 
         byteStream = new ByteArrayOutputStream();
-        centralDirectory = writeMapData(byteStream, false);
+        centralDirectory = writeMapData(byteStream, false, null);
         tilemapOffset = centralDirectory.getTilemapOffset();
         bytes = byteStream.toByteArray();
 
@@ -833,22 +944,66 @@ public class GameMap extends GameBlock implements Serializable
     private static int determineTilesOffset(final byte[] bytes,
         final int mapSize)
     {
-        int i = bytes.length - 9;
-        while (i > 0)
+        long header, pattern, word, matches;
+        int index, bit, offset;
+
+        // The second byte of the tile map header is the only one which is not
+        // zero. The block is scanned backwards eight bytes at a time for this
+        // byte and only the positions where it was found are compared with
+        // the fixed header bytes 0-3 and 6-7.
+        header = ((mapSize * mapSize) >> 8) << 8;
+        pattern = LOW_BITS * (header >>> 8);
+        index = bytes.length - 8;
+        while (index >= 7)
+        {
+            // Bytes equal to the pattern are zero after the XOR. Zero bytes
+            // get their high bit set. Bytes above a zero byte may be flagged
+            // too, but they are rejected by the header compare.
+            word = (long) LONGS.get(bytes, index - 7) ^ pattern;
+            matches = (word - LOW_BITS) & ~word & HIGH_BITS;
+            while (matches != 0)
+            {
+                bit = 63 - Long.numberOfLeadingZeros(matches);
+                offset = index - 7 + (bit >> 3) - 1;
+                if (offset > 0 && isTilesHeader(bytes, offset, header))
+                {
+                    return offset;
+                }
+                matches &= ~(1L << bit);
+            }
+            index -= 8;
+        }
+        for (; index >= 2; index--)
         {
-            if ((bytes[i] == 0) && (bytes[i + 1] == ((mapSize * mapSize) >> 8))
-                && (bytes[i + 2] == 0) && (bytes[i + 3] == 0)
-                && (bytes[i + 6] == 0) && (bytes[i + 7] == 0))
+            if (isTilesHeader(bytes, index - 1, header))
             {
-                return i;
+                return index - 1;
             }
-            i--;
         }
         throw new GameException("Unable to find tiles offset for size "
             + mapSize + " map");
     }
 
 
+    /**
+     * Checks if the tile map header starts at the specified offset.
+     *
+     * @param bytes
+     *            The MSQ block bytes
+     * @param offset
+     *            The offset to check
+     * @param header
+     *            The fixed bytes of the tile map header
+     * @return True if the tile map header starts at the offset, false if not
+     */
+
+    private static boolean isTilesHeader(final byte[] bytes, final int offset,
+        final long header)
+    {
+        return ((long) LONGS.get(bytes, offset) & TILES_HEADER_MASK) == header;
+    }
+
+
     /**
      * Returns the map size. This is normally 64 or 32. Maps are always
      * quadratic. It's not possible to have different widths and heights.
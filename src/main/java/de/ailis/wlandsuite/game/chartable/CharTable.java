@@ -26,16 +26,16 @@ package de.ailis.wlandsuite.game.chartable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-import de.ailis.wlandsuite.common.exceptions.GameException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 
 /**
- * CharTable
+ * The char table contains the 60 characters used by the strings of a map,
+ * sorted by their frequency. While building a new char table the characters
+ * are counted in a primitive frequency array. The finished table has a
+ * 256-entry reverse index so the table index of a character is found without
+ * searching.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
@@ -43,8 +43,26 @@ import de.ailis.wlandsuite.common.exceptions.GameException;
 
 public class CharTable
 {
-    /** The table entries */
-    private final List<CharTableEntry> entries;
+    /** The number of characters in a char table */
+    private static final int SIZE = 60;
+
+    /** The character used to fill up unused table entries */
+    private static final int FILLER = 0x7f;
+
+    /** How many times each character is used */
+    private final int[] counters;
+
+    /** The used characters in the order they were first added */
+    private final int[] order;
+
+    /** The number of different used characters */
+    private int used;
+
+    /** The table characters. Only valid when finished */
+    private final int[] characters;
+
+    /** The table index of each character or -1. Only valid when finished */
+    private final int[] indices;
 
     /** If this char table is finished and therefor read only */
     private boolean finished;
@@ -56,7 +74,10 @@ public class CharTable
 
     public CharTable()
     {
-        this.entries = new ArrayList<CharTableEntry>(60);
+        this.counters = new int[256];
+        this.order = new int[256];
+        this.characters = new int[SIZE];
+        this.indices = new int[256];
         this.finished = false;
     }
 
@@ -72,13 +93,12 @@ public class CharTable
 
     public CharTable(final InputStream stream) throws IOException
     {
-        this.entries = new ArrayList<CharTableEntry>(60);
-        for (int i = 60; i > 0; i--)
+        this();
+        for (int i = 0; i < SIZE; i++)
         {
-            final int b = stream.read();
-            this.entries.add(new CharTableEntry(b, i));
+            this.characters[i] = stream.read();
         }
-        Collections.sort(this.entries);
+        buildIndices();
         this.finished = true;
     }
 
@@ -96,15 +116,17 @@ public class CharTable
         {
             throw new IllegalStateException("CharTable is already finished");
         }
-        for (final CharTableEntry entry: this.entries)
+        if (character < 0 || character > 255)
         {
-            if (entry.getCharacter() == character)
-            {
-                entry.incrementCounter();
-                return;
-            }
+            throw new IllegalArgumentException("Invalid character: "
+                + character);
+        }
+        if (this.counters[character] == 0)
+        {
+            this.order[this.used] = character;
+            this.used++;
         }
-        this.entries.add(new CharTableEntry(character, 1));
+        this.counters[character]++;
     }
 
 
@@ -121,18 +143,10 @@ public class CharTable
         {
             throw new IllegalStateException("CharTable is already finished");
         }
-        try
+        for (final byte b: string.getBytes(StandardCharsets.US_ASCII))
         {
-            for (final byte b: string.toLowerCase().getBytes("ASCII"))
-            {
-                final int i = b & 0xff;
-
-                add(i);
-            }
-        }
-        catch (final UnsupportedEncodingException e)
-        {
-            throw new GameException(e.toString(), e);
+            // Upper case characters are counted as lower case characters
+            add(b >= 'A' && b <= 'Z' ? b + 32 : b & 0xff);
         }
     }
 
@@ -143,21 +157,60 @@ public class CharTable
 
     public void finish()
     {
-        for (int i = 60 - this.entries.size(); i > 0; i--)
+        int character, counter, i;
+
+        if (this.finished)
         {
-            this.entries.add(new CharTableEntry(0x7f, 0));
+            return;
         }
-        if (this.entries.size() != 60)
+        if (this.used > SIZE)
         {
             throw new IllegalStateException(
-                "CharTable has not 60 characters! It has "
-                    + this.entries.size());
+                "CharTable has not 60 characters! It has " + this.used);
         }
-        Collections.sort(this.entries);
+
+        // Sort the characters by frequency. Insertion sort is stable so
+        // characters with the same frequency keep the order in which they
+        // were first added.
+        for (int j = 0; j < this.used; j++)
+        {
+            character = this.order[j];
+            counter = this.counters[character];
+            i = j;
+            while (i > 0 && this.counters[this.characters[i - 1]] < counter)
+            {
+                this.characters[i] = this.characters[i - 1];
+                i--;
+            }
+            this.characters[i] = character;
+        }
+        Arrays.fill(this.characters, this.used, SIZE, FILLER);
+        buildIndices();
         this.finished = true;
     }
 
 
+    /**
+     * Builds the reverse index from the table characters. If a character is
+     * used multiple times then the first table index is used.
+     */
+
+    private void buildIndices()
+    {
+        int character;
+
+        Arrays.fill(this.indices, -1);
+        for (int i = SIZE - 1; i >= 0; i--)
+        {
+            character = this.characters[i];
+            if (character >= 0 && character < 256)
+            {
+                this.indices[character] = i;
+            }
+        }
+    }
+
+
     /**
      * Returns the character for the specified table index
      *
@@ -168,7 +221,12 @@ public class CharTable
 
     public int getCharacter(final int index)
     {
-        return this.entries.get(index).getCharacter();
+        if (!this.finished || index < 0 || index >= SIZE)
+        {
+            throw new IndexOutOfBoundsException("Invalid char table index: "
+                + index);
+        }
+        return this.characters[index];
     }
 
 
@@ -182,9 +240,20 @@ public class CharTable
 
     public int getIndex(final int character)
     {
-        for (int i = 0, max = this.entries.size(); i < max; i++)
+        if (!this.finished)
+        {
+            return -1;
+        }
+        if (character >= 0 && character < 256)
         {
-            if (this.entries.get(i).getCharacter() == character)
+            return this.indices[character];
+        }
+
+        // Characters outside of the index can only come from a corrupt
+        // char table which was read from a stream
+        for (int i = 0; i < SIZE; i++)
+        {
+            if (this.characters[i] == character)
             {
                 return i;
             }
@@ -206,9 +275,9 @@ public class CharTable
     {
         if (!this.finished) finish();
 
-        for (final CharTableEntry entry: this.entries)
+        for (final int character: this.characters)
         {
-            stream.write(entry.getCharacter());
+            stream.write(character);
         }
     }
 
@@ -225,13 +294,11 @@ public class CharTable
         if (!this.finished) finish();
 
         builder = new StringBuilder();
-        for (final CharTableEntry entry: this.entries)
+        for (final int i: this.characters)
         {
-            final int i = entry.getCharacter();
-
             if (i >= 0x20 && i < 0x7f)
             {
-                builder.append(new String(new byte[] { (byte) i }));
+                builder.append((char) i);
             }
             else
             {
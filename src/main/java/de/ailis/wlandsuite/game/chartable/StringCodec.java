@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game.chartable;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.ailis.wlandsuite.common.exceptions.GameException;
+
+
+/**
+ * Decodes the 5-bit encoded strings of a map. Each symbol is an index into the
+ * char table. Symbol 0x1e switches the next character to upper case and
+ * symbol 0x1f selects the upper half of the char table for the next
+ * character. The codec precomputes a 64-entry lookup table for lower case and
+ * for upper case characters which is indexed by the high flag and the symbol,
+ * reads the symbols from its own bit buffer and collects the characters in a
+ * reusable char array.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class StringCodec
+{
+    /** The symbol which selects upper case for the next character */
+    private static final int UPPER = 0x1e;
+
+    /** The symbol which selects the upper table half for the next character */
+    private static final int HIGH = 0x1f;
+
+    /** The character which terminates a string */
+    private static final char END = 0;
+
+    /** The character used for characters which are not ASCII */
+    private static final char REPLACEMENT = 0xfffd;
+
+    /** The lower case characters indexed by high flag and symbol */
+    private final char[] lowerTable;
+
+    /** The upper case characters indexed by high flag and symbol */
+    private final char[] upperTable;
+
+    /** The buffer for the characters of the current string */
+    private char[] buffer;
+
+
+    /**
+     * Constructor
+     *
+     * @param charTable
+     *            The char table
+     */
+
+    public StringCodec(final CharTable charTable)
+    {
+        int character;
+        char c;
+
+        this.lowerTable = new char[64];
+        this.upperTable = new char[64];
+        for (int i = 0; i < 60; i++)
+        {
+            // Characters which are not ASCII are decoded as replacement
+            // characters
+            character = charTable.getCharacter(i);
+            c = character >= 0 && character < 128 ? (char) character
+                : REPLACEMENT;
+            this.lowerTable[i < UPPER ? i : i - UPPER + 32] = c;
+            this.upperTable[i < UPPER ? i : i - UPPER + 32] = Character
+                .toUpperCase(c);
+        }
+        this.buffer = new char[64];
+    }
+
+
+    /**
+     * Decodes a group of four strings and adds them to the specified list. A
+     * string group ends early when the position is behind the specified end.
+     * The position is counted in bytes which have been read into the bit
+     * buffer.
+     *
+     * @param bytes
+     *            The encoded bytes
+     * @param offset
+     *            The offset of the string group in the array
+     * @param end
+     *            The last offset in the array at which reading may start
+     * @param strings
+     *            The list to add the strings to
+     */
+
+    public void decodeGroup(final byte[] bytes, final int offset,
+        final int end, final List<String> strings)
+    {
+        long bits;
+        int count, position, symbol, length;
+        boolean upper, high;
+        char c;
+
+        bits = 0;
+        count = 0;
+        position = offset;
+        for (int j = 0; j < 4; j++)
+        {
+            upper = false;
+            high = false;
+            length = 0;
+            while (true)
+            {
+                if (position > end)
+                {
+                    return;
+                }
+
+                // Read the next 5 bits from the lowest bits of the bytes
+                if (count < 5)
+                {
+                    if (position >= bytes.length)
+                    {
+                        throw new GameException(
+                            "Unexpected end of string data");
+                    }
+                    bits |= (long) (bytes[position] & 0xff) << count;
+                    position++;
+                    count += 8;
+                }
+                symbol = (int) bits & 0x1f;
+                bits >>>= 5;
+                count -= 5;
+
+                if (symbol == HIGH)
+                {
+                    high = true;
+                }
+                else if (symbol == UPPER)
+                {
+                    upper = true;
+                }
+                else
+                {
+                    c = (upper ? this.upperTable : this.lowerTable)[high
+                        ? symbol | 32 : symbol];
+                    if (c == END)
+                    {
+                        break;
+                    }
+                    if (length == this.buffer.length)
+                    {
+                        this.buffer = Arrays.copyOf(this.buffer,
+                            length << 1);
+                    }
+                    this.buffer[length] = c;
+                    length++;
+                    upper = false;
+                    high = false;
+                }
+            }
+            strings.add(new String(this.buffer, 0, length));
+        }
+    }
+}
@@ -26,12 +26,14 @@ package de.ailis.wlandsuite.game.parts;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.dom4j.Element;
 
 import de.ailis.wlandsuite.common.exceptions.GameException;
 import de.ailis.wlandsuite.game.chartable.CharTable;
+import de.ailis.wlandsuite.game.chartable.StringCodec;
 import de.ailis.wlandsuite.io.SeekableInputStream;
 import de.ailis.wlandsuite.io.SeekableOutputStream;
 import de.ailis.wlandsuite.utils.StringUtils;
@@ -92,10 +94,12 @@ public class Strings extends ArrayList<String>
     public static Strings read(final SeekableInputStream stream, final int endOffset)
         throws IOException
     {
-        long startOffset;
+        long startOffset, dataOffset;
         Strings strings;
         List<Integer> stringOffsets;
         int tmp, quantity;
+        byte[] bytes;
+        StringCodec codec;
 
         // Remember the start offset
         startOffset = stream.tell();
@@ -131,11 +135,19 @@ public class Strings extends ArrayList<String>
             stringOffsets.add(tmp);
         }
 
+        // Read the string data up to the last byte at which a string group
+        // may still be read
+        dataOffset = startOffset + 60;
+        stream.seek(dataOffset);
+        bytes = readBytes(stream, (int) Math.max(0, endOffset + 1
+            - dataOffset));
+
         // Read the strings
+        codec = new StringCodec(charTable);
         for (int i = 0, max = stringOffsets.size(); i < max; i++)
         {
-            stream.seek(stringOffsets.get(i) + 60 + startOffset);
-            readStringGroup(stream, charTable, strings, endOffset);
+            codec.decodeGroup(bytes, stringOffsets.get(i),
+                (int) (endOffset - dataOffset), strings);
         }
 
         // Return the strings
@@ -144,66 +156,36 @@ public class Strings extends ArrayList<String>
 
 
     /**
-     * Reads a string group from the specified stream. The stream must be
-     * positioned at the beginning of the string group. The strings are
-     * completely decrypted by using the specified char table. Strings are added
-     * to the specified strings array.
+     * Reads up to the specified number of bytes from the stream. Less bytes
+     * are returned if the end of the stream is reached.
      *
      * @param stream
-     *            The stream to read the string group from
-     * @param charTable
-     *            The character table
-     * @param strings
-     *            The string list to add the strings to
-     * @param endOffset
-     *            The definite end of the strings block
+     *            The stream to read from
+     * @param quantity
+     *            The maximum number of bytes to read
+     * @return The read bytes
      * @throws IOException
      *             When file operation fails.
      */
 
-    private static void readStringGroup(final SeekableInputStream stream,
-        final CharTable charTable, final List<String> strings, final int endOffset)
-        throws IOException
+    private static byte[] readBytes(final SeekableInputStream stream,
+        final int quantity) throws IOException
     {
-        for (int j = 0; j < 4; j++)
+        byte[] bytes;
+        int read, count;
+
+        bytes = new byte[quantity];
+        read = 0;
+        while (read < quantity)
         {
-            boolean upper = false;
-            boolean high = false;
-            final StringBuilder string = new StringBuilder();
-            outer: while (true)
+            count = stream.read(bytes, read, quantity - read);
+            if (count == -1)
             {
-                if (stream.tell() > endOffset)
-                {
-                    return;
-                }
-                final int index = stream.readBits(5, true);
-                switch (index)
-                {
-                    case 0x1f:
-                        high = true;
-                        break;
-
-                    case 0x1e:
-                        upper = true;
-                        break;
-
-                    default:
-                        final int character = charTable.getCharacter(index
-                            + (high ? 0x1e : 0));
-                        if (character == 0)
-                        {
-                            break outer;
-                        }
-                        String s = new String(new byte[] { (byte) character },
-                            "ASCII");
-                        if (upper) s = s.toUpperCase();
-                        string.append(s);
-                        upper = false;
-                        high = false;
-                }
+                return Arrays.copyOf(bytes, read);
             }
-            strings.add(string.toString());
+            read += count;
         }
+        return bytes;
     }
 
 
@@ -23,16 +23,13 @@
 
 package de.ailis.wlandsuite.game.parts;
 
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 
-import de.ailis.wlandsuite.common.exceptions.GameException;
 import de.ailis.wlandsuite.huffman.HuffmanInputStream;
 import de.ailis.wlandsuite.huffman.HuffmanOutputStream;
 import de.ailis.wlandsuite.huffman.HuffmanTree;
@@ -44,6 +41,8 @@ import de.ailis.wlandsuite.utils.XmlUtils;
 
 /**
  * The Tile Map maps eachs square to a specific tile of the selected tileset.
+ * The tiles are stored in a single byte array in row-major order so they can
+ * be decoded and encoded in bulk and copied row by row.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
@@ -51,8 +50,11 @@ import de.ailis.wlandsuite.utils.XmlUtils;
 
 public class TileMap
 {
-    /** The tile map. First index is y, second is x */
-    private final int[][] map;
+    /** The map size */
+    private final int mapSize;
+
+    /** The tiles in row-major order */
+    private final byte[] tiles;
 
     /** A unknown 32 bit address */
     private int unknown;
@@ -76,7 +78,8 @@ public class TileMap
             throw new IllegalArgumentException("Illegal map size specified: "
                 + mapSize);
         }
-        this.map = new int[mapSize][mapSize];
+        this.mapSize = mapSize;
+        this.tiles = new byte[mapSize * mapSize];
     }
 
 
@@ -96,52 +99,14 @@ public class TileMap
         final int backgroundTile)
     {
         TileMap tileMap;
-        String data;
-        String c;
-        int i;
-        int b;
 
         // Create the new Tile Map
         tileMap = new TileMap(mapSize);
 
         tileMap.unknown = StringUtils.toInt(element.attributeValue("unknown",
             "0"));
-        data = element.getTextTrim();
-        i = 0;
-        for (int y = 0; y < mapSize; y++)
-        {
-            for (int x = 0; x < mapSize; x++)
-            {
-                try
-                {
-                    c = data.substring(i * 3, i * 3 + 2);
-                }
-                catch (final StringIndexOutOfBoundsException e)
-                {
-                    throw new GameException("Tile map is corrupt: "
-                        + (mapSize * mapSize - (y * mapSize + x))
-                        + " bytes missing");
-                }
-                if (c.equals(".."))
-                {
-                    b = backgroundTile;
-                }
-                else
-                {
-                    try
-                    {
-                        b = Integer.valueOf(c, 16);
-                    }
-                    catch (final NumberFormatException e)
-                    {
-                        throw new GameException(
-                            "Illegal data in tile map at y=" + y + " x=" + x);
-                    }
-                }
-                tileMap.map[y][x] = b;
-                i++;
-            }
-        }
+        TileMapCodec.parse(element.getTextTrim(), mapSize, backgroundTile,
+            tileMap.tiles);
 
         // Returns the newly created Tile Map
         return tileMap;
@@ -208,16 +173,40 @@ public class TileMap
         }
 
         // Read the tile map data
-        for (int y = 0; y < realMapSize; y++)
+        readFully(huffmanStream, tileMap.tiles);
+
+        // Return the tile map
+        return tileMap;
+    }
+
+
+    /**
+     * Reads the whole byte array from the specified stream.
+     *
+     * @param stream
+     *            The input stream
+     * @param bytes
+     *            The array to fill
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private static void readFully(final InputStream stream, final byte[] bytes)
+        throws IOException
+    {
+        int read, count;
+
+        read = 0;
+        while (read < bytes.length)
         {
-            for (int x = 0; x < realMapSize; x++)
+            count = stream.read(bytes, read, bytes.length - read);
+            if (count == -1)
             {
-                tileMap.map[y][x] = huffmanStream.read();
+                throw new EOFException(
+                    "Unexpected end of stream while reading tile map");
             }
+            read += count;
         }
-
-        // Return the tile map
-        return tileMap;
     }
 
 
@@ -232,9 +221,6 @@ public class TileMap
     public Element toXml(final int backgroundTile)
     {
         Element element;
-        StringWriter text;
-        PrintWriter writer;
-        int mapSize;
 
         // Create the root element
         element = XmlUtils.createElement("tileMap");
@@ -243,39 +229,9 @@ public class TileMap
             element.addAttribute("unknown", StringUtils.toHex(this.unknown));
         }
 
-        // Determine the map size
-        mapSize = this.map.length;
-
         // Write the tile map content
-        text = new StringWriter();
-        writer = new PrintWriter(text);
-        writer.println();
-        for (int y = 0; y < mapSize; y++)
-        {
-            writer.print("    ");
-            for (int x = 0; x < mapSize; x++)
-            {
-                int b;
-
-                if (x > 0)
-                {
-                    writer.print(" ");
-                }
-
-                b = this.map[y][x];
-                if (b == backgroundTile)
-                {
-                    writer.append("..");
-                }
-                else
-                {
-                    writer.format("%02x", new Object[] { b });
-                }
-            }
-            writer.println();
-        }
-        writer.print("  ");
-        element.add(DocumentHelper.createText(text.toString()));
+        element.add(DocumentHelper.createText(TileMapCodec.format(this.tiles,
+            this.mapSize, backgroundTile)));
 
         // Return the XML code
         return element;
@@ -297,13 +253,11 @@ public class TileMap
         throws IOException
     {
         int mapSize;
-        ByteArrayOutputStream byteStream;
-        byte[] bytes;
         HuffmanTree tree;
         HuffmanOutputStream huffmanStream;
 
         // Determine the map size
-        mapSize = this.map.length;
+        mapSize = this.mapSize;
 
         // Write the Tile Map header
         if (compress)
@@ -313,25 +267,16 @@ public class TileMap
         }
 
         // Write the Tile Map data
-        byteStream = new ByteArrayOutputStream();
-        for (int y = 0; y < mapSize; y++)
-        {
-            for (int x = 0; x < mapSize; x++)
-            {
-                byteStream.write(this.map[y][x]);
-            }
-        }
-        bytes = byteStream.toByteArray();
         if (compress)
         {
-            tree = HuffmanTree.create(bytes);
+            tree = HuffmanTree.create(this.tiles);
             huffmanStream = new HuffmanOutputStream(stream, tree);
-            huffmanStream.write(bytes);
+            huffmanStream.write(this.tiles);
             huffmanStream.flush();
         }
         else
         {
-            stream.write(bytes);
+            stream.write(this.tiles);
         }
     }
 
@@ -348,7 +293,8 @@ public class TileMap
 
     public int getTile(final int x, final int y)
     {
-        return this.map[y][x];
+        checkPosition(x, y);
+        return this.tiles[y * this.mapSize + x] & 0xff;
     }
 
 
@@ -365,7 +311,158 @@ public class TileMap
 
     public void setTile(final int x, final int y, final int tile)
     {
-        this.map[y][x] = tile;
+        checkPosition(x, y);
+        this.tiles[y * this.mapSize + x] = (byte) tile;
+    }
+
+
+    /**
+     * Returns the map size.
+     *
+     * @return The map size (32 or 64)
+     */
+
+    public int getMapSize()
+    {
+        return this.mapSize;
+    }
+
+
+    /**
+     * Copies a row of tiles into the specified array.
+     *
+     * @param y
+     *            The Y coordinate of the row
+     * @param row
+     *            The array to copy the tiles to
+     * @param offset
+     *            The offset in the array
+     */
+
+    public void getRow(final int y, final byte[] row, final int offset)
+    {
+        getRegion(0, y, this.mapSize, 1, row, offset);
+    }
+
+
+    /**
+     * Sets a row of tiles from the specified array.
+     *
+     * @param y
+     *            The Y coordinate of the row
+     * @param row
+     *            The array to copy the tiles from
+     * @param offset
+     *            The offset in the array
+     */
+
+    public void setRow(final int y, final byte[] row, final int offset)
+    {
+        setRegion(0, y, this.mapSize, 1, row, offset);
+    }
+
+
+    /**
+     * Copies a rectangular region of tiles into the specified array. The
+     * tiles are written in row-major order without gaps between the rows.
+     *
+     * @param x
+     *            The X coordinate of the region
+     * @param y
+     *            The Y coordinate of the region
+     * @param width
+     *            The width of the region
+     * @param height
+     *            The height of the region
+     * @param region
+     *            The array to copy the tiles to
+     * @param offset
+     *            The offset in the array
+     */
+
+    public void getRegion(final int x, final int y, final int width,
+        final int height, final byte[] region, final int offset)
+    {
+        checkRegion(x, y, width, height);
+        for (int row = 0; row < height; row++)
+        {
+            System.arraycopy(this.tiles, (y + row) * this.mapSize + x, region,
+                offset + row * width, width);
+        }
+    }
+
+
+    /**
+     * Sets a rectangular region of tiles from the specified array. The tiles
+     * are read in row-major order without gaps between the rows.
+     *
+     * @param x
+     *            The X coordinate of the region
+     * @param y
+     *            The Y coordinate of the region
+     * @param width
+     *            The width of the region
+     * @param height
+     *            The height of the region
+     * @param region
+     *            The array to copy the tiles from
+     * @param offset
+     *            The offset in the array
+     */
+
+    public void setRegion(final int x, final int y, final int width,
+        final int height, final byte[] region, final int offset)
+    {
+        checkRegion(x, y, width, height);
+        for (int row = 0; row < height; row++)
+        {
+            System.arraycopy(region, offset + row * width, this.tiles, (y + row)
+                * this.mapSize + x, width);
+        }
+    }
+
+
+    /**
+     * Validates the specified position.
+     *
+     * @param x
+     *            The X coordinate
+     * @param y
+     *            The Y coordinate
+     */
+
+    private void checkPosition(final int x, final int y)
+    {
+        if (x < 0 || y < 0 || x >= this.mapSize || y >= this.mapSize)
+        {
+            throw new IndexOutOfBoundsException("Position outside of tile "
+                + "map: " + x + ", " + y);
+        }
+    }
+
+
+    /**
+     * Validates the specified region.
+     *
+     * @param x
+     *            The X coordinate of the region
+     * @param y
+     *            The Y coordinate of the region
+     * @param width
+     *            The width of the region
+     * @param height
+     *            The height of the region
+     */
+
+    private void checkRegion(final int x, final int y, final int width,
+        final int height)
+    {
+        if (x < 0 || y < 0 || width < 0 || height < 0
+            || x + width > this.mapSize || y + height > this.mapSize)
+        {
+            throw new IndexOutOfBoundsException("Region outside of tile map: "
+                + x + ", " + y + ", " + width + "x" + height);
+        }
     }
 
 
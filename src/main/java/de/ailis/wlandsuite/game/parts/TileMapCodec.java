@@ -0,0 +1,205 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game.parts;
+
+import de.ailis.wlandsuite.common.exceptions.GameException;
+
+
+/**
+ * Converts the tiles of a tile map from and to the text of the tileMap XML
+ * element. Each tile is written as a two-digit hex number (or ".." for the
+ * background tile), the tiles of a row are separated by spaces and each row
+ * is written on its own indented line. The text is written into a single
+ * preallocated char array and is parsed by scanning the characters with a
+ * lookup table, so no temporary strings are created per tile.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class TileMapCodec
+{
+    /** The hex digits */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The values of the hex digit characters. -1 for other characters */
+    private static final byte[] VALUES = new byte[128];
+
+    /** The line separator */
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    /** The indentation of a row */
+    private static final String INDENT = "    ";
+
+    /** The indentation of the closing tag */
+    private static final String CLOSING_INDENT = "  ";
+
+    static
+    {
+        for (int i = 0; i < VALUES.length; i++)
+        {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < 16; i++)
+        {
+            VALUES[DIGITS[i]] = (byte) i;
+            VALUES[Character.toUpperCase(DIGITS[i])] = (byte) i;
+        }
+    }
+
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+
+    private TileMapCodec()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Formats the specified tiles as tile map text.
+     *
+     * @param tiles
+     *            The tiles in row-major order
+     * @param mapSize
+     *            The map size
+     * @param backgroundTile
+     *            The background tile for which ".." is written
+     * @return The tile map text
+     */
+
+    static String format(final byte[] tiles, final int mapSize,
+        final int backgroundTile)
+    {
+        char[] chars;
+        int index, tile;
+
+        chars = new char[NEWLINE.length() + mapSize
+            * (INDENT.length() + mapSize * 3 - 1 + NEWLINE.length())
+            + CLOSING_INDENT.length()];
+        index = append(chars, 0, NEWLINE);
+        for (int y = 0; y < mapSize; y++)
+        {
+            index = append(chars, index, INDENT);
+            for (int x = 0; x < mapSize; x++)
+            {
+                if (x > 0)
+                {
+                    chars[index++] = ' ';
+                }
+                tile = tiles[y * mapSize + x] & 0xff;
+                if (tile == backgroundTile)
+                {
+                    chars[index++] = '.';
+                    chars[index++] = '.';
+                }
+                else
+                {
+                    chars[index++] = DIGITS[tile >> 4];
+                    chars[index++] = DIGITS[tile & 0xf];
+                }
+            }
+            index = append(chars, index, NEWLINE);
+        }
+        append(chars, index, CLOSING_INDENT);
+        return new String(chars);
+    }
+
+
+    /**
+     * Parses the specified tile map text into the tiles array. The text must
+     * already be trimmed.
+     *
+     * @param data
+     *            The trimmed tile map text
+     * @param mapSize
+     *            The map size
+     * @param backgroundTile
+     *            The background tile which is used for ".."
+     * @param tiles
+     *            The array to fill with the tiles in row-major order
+     */
+
+    static void parse(final String data, final int mapSize,
+        final int backgroundTile, final byte[] tiles)
+    {
+        int index, length, high, low;
+        char c1, c2;
+
+        length = data.length();
+        index = 0;
+        for (int y = 0; y < mapSize; y++)
+        {
+            for (int x = 0; x < mapSize; x++)
+            {
+                if (index + 2 > length)
+                {
+                    throw new GameException("Tile map is corrupt: "
+                        + (mapSize * mapSize - (y * mapSize + x))
+                        + " bytes missing");
+                }
+                c1 = data.charAt(index);
+                c2 = data.charAt(index + 1);
+                if (c1 == '.' && c2 == '.')
+                {
+                    tiles[y * mapSize + x] = (byte) backgroundTile;
+                }
+                else
+                {
+                    high = c1 < 128 ? VALUES[c1] : -1;
+                    low = c2 < 128 ? VALUES[c2] : -1;
+                    if (high < 0 || low < 0)
+                    {
+                        throw new GameException(
+                            "Illegal data in tile map at y=" + y + " x=" + x);
+                    }
+                    tiles[y * mapSize + x] = (byte) ((high << 4) | low);
+                }
+                index += 3;
+            }
+        }
+    }
+
+
+    /**
+     * Appends a string to the char array.
+     *
+     * @param chars
+     *            The char array
+     * @param index
+     *            The index to write the string to
+     * @param string
+     *            The string to append
+     * @return The index behind the appended string
+     */
+
+    private static int append(final char[] chars, final int index,
+        final String string)
+    {
+        string.getChars(0, string.length(), chars, index);
+        return index + string.length();
+    }
+}
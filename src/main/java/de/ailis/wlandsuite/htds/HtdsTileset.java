@@ -37,22 +37,41 @@ import java.util.List;
 import de.ailis.wlandsuite.huffman.HuffmanInputStream;
 import de.ailis.wlandsuite.huffman.HuffmanOutputStream;
 import de.ailis.wlandsuite.huffman.HuffmanTree;
+import de.ailis.wlandsuite.image.PackedBitmap;
 import de.ailis.wlandsuite.msq.MsqHeader;
 import de.ailis.wlandsuite.msq.MsqType;
 import de.ailis.wlandsuite.pic.Pic;
+import de.ailis.wlandsuite.pic.VerticalXorCodec;
 
 
 /**
  * HtdsTileset
  *
+ * A tileset which is read from a stream keeps the packed pixels of all tiles
+ * in a single tile atlas. The tiles are stored one after another, so each
+ * tile is just a slice of the atlas. Pictures are only created for the tiles
+ * when the tile list is requested.
+ *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
 public class HtdsTileset
 {
-    /** The tiles */
-    private final List<Pic> tiles;
+    /** The tiles. Null as long as the tiles are only stored in the atlas */
+    private List<Pic> tiles;
+
+    /**
+     * The tile atlas with the packed pixels of all tiles. Null if the tiles
+     * are stored as pictures
+     */
+    private byte[] atlas;
+
+    /** The tile width */
+    private final int tileWidth;
+
+    /** The tile height */
+    private final int tileHeight;
 
 
     /**
@@ -65,6 +84,34 @@ public class HtdsTileset
     public HtdsTileset(final List<Pic> tiles)
     {
         this.tiles = tiles;
+        this.tileWidth = tiles.isEmpty() ? 0 : tiles.get(0).getWidth();
+        this.tileHeight = tiles.isEmpty() ? 0 : tiles.get(0).getHeight();
+    }
+
+
+    /**
+     * Creates a tileset from a tile atlas. The atlas contains the packed and
+     * not xor-encoded pixels of all tiles one after another. The atlas is not
+     * copied.
+     *
+     * @param atlas
+     *            The tile atlas
+     * @param width
+     *            The tile width
+     * @param height
+     *            The tile height
+     */
+
+    public HtdsTileset(final byte[] atlas, final int width, final int height)
+    {
+        if (atlas.length % PackedBitmap.getSize(width, height, 4) != 0)
+        {
+            throw new IllegalArgumentException(
+                "Atlas size is not a multiple of the tile size");
+        }
+        this.atlas = atlas;
+        this.tileWidth = width;
+        this.tileHeight = height;
     }
 
 
@@ -159,8 +206,8 @@ public class HtdsTileset
     {
         MsqHeader header;
         HuffmanInputStream huffmanStream;
-        List<Pic> tiles;
-        int quantity;
+        byte[] atlas;
+        int quantity, tileSize;
 
         // Read the next MSQ header and validate it
         header = MsqHeader.read(stream);
@@ -177,15 +224,18 @@ public class HtdsTileset
 
         // Calculate the number of tiles
         quantity = header.getSize() * 2 / width / height;
+        tileSize = PackedBitmap.getSize(width, height, 4);
 
-        // Read the tiles
-        tiles = new ArrayList<Pic>(quantity);
+        // Read all tiles into the atlas and decode them there
+        atlas = new byte[quantity * tileSize];
         huffmanStream = new HuffmanInputStream(stream);
+        Pic.readBitmap(huffmanStream, new PackedBitmap(atlas, 0, width, height
+            * quantity, 4), false);
         for (int i = 0; i < quantity; i++)
         {
-            tiles.add(Pic.read(huffmanStream, width, height));
+            VerticalXorCodec.decode(atlas, i * tileSize, width / 2, height);
         }
-        return new HtdsTileset(tiles);
+        return new HtdsTileset(atlas, width, height);
     }
 
 
@@ -208,22 +258,25 @@ public class HtdsTileset
     public static HtdsTileset readHacked(final InputStream stream, final int width,
         final int height) throws IOException
     {
-        List<Pic> tiles;
+        ByteArrayOutputStream atlas;
+        PackedBitmap tile;
 
         // Read the tiles
-        tiles = new ArrayList<Pic>(163);
+        atlas = new ByteArrayOutputStream();
+        tile = new PackedBitmap(width, height, 4);
         while (true)
         {
             try
             {
-                tiles.add(Pic.read(stream, width, height, false));
+                Pic.readBitmap(stream, tile, false);
             }
             catch (final EOFException e)
             {
                 break;
             }
+            atlas.write(tile.getData(), 0, tile.getSize());
         }
-        return new HtdsTileset(tiles);
+        return new HtdsTileset(atlas.toByteArray(), width, height);
     }
 
 
@@ -270,22 +323,14 @@ public class HtdsTileset
         MsqHeader header;
         HuffmanOutputStream huffmanStream;
         HuffmanTree tree;
-        int size;
         byte[] bytes;
 
-        // Calculate the size of the tileset
-        size = 0;
-        for (final Pic tile: this.tiles)
-        {
-            size += tile.getWidth() * tile.getHeight() / 2;
-        }
-
         // Write the MSQ header
-        header = new MsqHeader(MsqType.Compressed, disk, size);
+        bytes = getBytes();
+        header = new MsqHeader(MsqType.Compressed, disk, bytes.length);
         header.write(stream);
 
         // Write the tiles
-        bytes = getBytes();
         tree = HuffmanTree.create(bytes);
         huffmanStream = new HuffmanOutputStream(stream, tree);
         huffmanStream.write(bytes);
@@ -333,6 +378,25 @@ public class HtdsTileset
     public byte[] getBytes(final boolean encoded)
     {
         ByteArrayOutputStream stream;
+        byte[] bytes;
+        int tileSize;
+
+        // Copy the atlas and encode the tiles in the copy
+        if (this.atlas != null)
+        {
+            bytes = this.atlas.clone();
+            if (encoded)
+            {
+                tileSize = PackedBitmap.getSize(this.tileWidth,
+                    this.tileHeight, 4);
+                for (int i = 0; i < bytes.length; i += tileSize)
+                {
+                    VerticalXorCodec.encode(bytes, i, this.tileWidth / 2,
+                        this.tileHeight);
+                }
+            }
+            return bytes;
+        }
 
         try
         {
@@ -357,14 +421,77 @@ public class HtdsTileset
         }
     }
 
+
     /**
-     * Returns the tiles.
+     * Returns the tiles. If the tiles are stored in the atlas then pictures
+     * are created for them and the atlas is dropped because from now on the
+     * tiles can be modified through the returned pictures.
      *
      * @return The tiles
      */
 
     public List<Pic> getTiles()
     {
+        List<Pic> pics;
+        int quantity;
+
+        if (this.tiles == null)
+        {
+            quantity = getTileCount();
+            pics = new ArrayList<Pic>(quantity);
+            for (int i = 0; i < quantity; i++)
+            {
+                pics.add(Pic.fromBitmap(getTile(i)));
+            }
+            this.tiles = pics;
+            this.atlas = null;
+        }
         return this.tiles;
     }
+
+
+    /**
+     * Returns the number of tiles.
+     *
+     * @return The number of tiles
+     */
+
+    public int getTileCount()
+    {
+        if (this.tiles != null)
+        {
+            return this.tiles.size();
+        }
+        return this.atlas.length
+            / PackedBitmap.getSize(this.tileWidth, this.tileHeight, 4);
+    }
+
+
+    /**
+     * Returns the pixels of the tile with the specified index. The returned
+     * bitmap is a read-only view on the atlas or on the tile picture, so no
+     * pixels are copied.
+     *
+     * @param index
+     *            The tile index
+     * @return The tile bitmap
+     */
+
+    public PackedBitmap getTile(final int index)
+    {
+        int tileSize;
+
+        if (this.tiles != null)
+        {
+            return this.tiles.get(index).asReadOnly();
+        }
+        tileSize = PackedBitmap.getSize(this.tileWidth, this.tileHeight, 4);
+        if (index < 0 || (index + 1) * tileSize > this.atlas.length)
+        {
+            throw new IndexOutOfBoundsException("Invalid tile index: "
+                + index);
+        }
+        return new PackedBitmap(this.atlas, index * tileSize, this.tileWidth,
+            this.tileHeight, 4).asReadOnly();
+    }
 }
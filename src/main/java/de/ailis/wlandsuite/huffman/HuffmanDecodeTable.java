@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.huffman;
+
+import java.util.Arrays;
+
+
+/**
+ * A huffman decode table is a huffman tree compiled into flat lookup tables.
+ * The primary table is indexed by the next PRIMARY_BITS bits of the stream.
+ * Each entry either contains a payload together with the length of its code
+ * or (for codes longer than the table width) a pointer to a sub table which is
+ * indexed by the next SUB_BITS bits. So a whole symbol is decoded with one or
+ * two table lookups instead of walking the tree bit by bit.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+class HuffmanDecodeTable
+{
+    /** The number of bits used to index the primary table */
+    static final int PRIMARY_BITS = 10;
+
+    /** The number of bits used to index a sub table */
+    static final int SUB_BITS = 6;
+
+    /** The flag which marks a table entry as a pointer to a sub table */
+    static final int SUB_TABLE = 0x80000000;
+
+    /** The huffman tree */
+    private final HuffmanTree tree;
+
+    /** The table entries. The primary table is located at offset 0 */
+    private int[] entries;
+
+    /** The number of used table entries */
+    private int size;
+
+
+    /**
+     * Constructor
+     *
+     * @param tree
+     *            The huffman tree to compile
+     */
+
+    HuffmanDecodeTable(final HuffmanTree tree)
+    {
+        this.tree = tree;
+        this.entries = new int[1 << PRIMARY_BITS];
+        this.size = this.entries.length;
+        fill(tree.getRoot(), 0, PRIMARY_BITS, 0, 0);
+    }
+
+
+    /**
+     * Fills the table entries for the specified node and all its sub nodes.
+     * Leaf nodes occupy all table entries which start with the code of the
+     * node. Nodes which are deeper than the table width get their own sub
+     * table.
+     *
+     * @param node
+     *            The number of the node to compile
+     * @param table
+     *            The offset of the table to fill
+     * @param bits
+     *            The number of bits used to index the table
+     * @param depth
+     *            The depth of the node relative to the table
+     * @param code
+     *            The code of the node relative to the table
+     */
+
+    private void fill(final int node, final int table, final int bits,
+        final int depth, final int code)
+    {
+        int first, subTable;
+
+        if (this.tree.getLeft(node) == -1)
+        {
+            first = table + (code << (bits - depth));
+            Arrays.fill(this.entries, first, first + (1 << (bits - depth)),
+                (depth << 8) | (this.tree.getPayload(node) & 0xff));
+        }
+        else if (depth == bits)
+        {
+            subTable = allocate(1 << SUB_BITS);
+            this.entries[table + code] = SUB_TABLE | subTable;
+            fill(node, subTable, SUB_BITS, 0, 0);
+        }
+        else
+        {
+            fill(this.tree.getLeft(node), table, bits, depth + 1, code << 1);
+            fill(this.tree.getRight(node), table, bits, depth + 1,
+                (code << 1) | 1);
+        }
+    }
+
+
+    /**
+     * Allocates a new sub table and returns its offset.
+     *
+     * @param quantity
+     *            The number of entries in the sub table
+     * @return The offset of the sub table
+     */
+
+    private int allocate(final int quantity)
+    {
+        int offset;
+
+        offset = this.size;
+        this.size += quantity;
+        if (this.size > this.entries.length)
+        {
+            this.entries = Arrays.copyOf(this.entries, Math.max(
+                this.entries.length << 1, this.size));
+        }
+        return offset;
+    }
+
+
+    /**
+     * Returns the table entries. Bit 31 of an entry marks a pointer to a sub
+     * table in which case the lower bits contain the offset of the sub table.
+     * Otherwise bits 0-7 contain the payload and bits 8-15 the number of
+     * code bits consumed from the table index.
+     *
+     * @return The table entries
+     */
+
+    int[] getEntries()
+    {
+        return this.entries;
+    }
+}
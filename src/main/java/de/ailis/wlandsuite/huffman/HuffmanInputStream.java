@@ -47,6 +47,15 @@ public class HuffmanInputStream extends BitInputStream
     /** The bit reader */
     private final BitInputStream bitStream;
 
+    /** The compiled decode table entries */
+    private final int[] table;
+
+    /** The buffered bits which are not yet decoded (Lowest bits are newest) */
+    private int bitBuffer;
+
+    /** The number of buffered bits */
+    private int bitCount;
+
 
     /**
      * Constructor
@@ -61,6 +70,13 @@ public class HuffmanInputStream extends BitInputStream
     {
         this.bitStream = new BitInputStreamWrapper(stream);
         this.tree = HuffmanTree.load(this.bitStream);
+        this.table = new HuffmanDecodeTable(this.tree)
+            .getEntries();
+
+        // Take over the bits of the current byte which are not used by the
+        // huffman tree
+        this.bitCount = this.bitStream.getBitsLeft();
+        this.bitBuffer = this.bitStream.readBits(this.bitCount, false);
     }
 
 
@@ -71,28 +87,105 @@ public class HuffmanInputStream extends BitInputStream
     @Override
     public int read() throws IOException
     {
-        byte bit;
-        HuffmanNode node;
-        int payload;
+        return decode();
+    }
+
 
-        node = this.tree.getRootNode();
-        while ((payload = node.getPayload()) == -1)
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || off + len > b.length)
         {
-            bit = this.bitStream.readBit();
-            if (bit == -1)
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        // The first byte is decoded outside of the loop so an unexpected end
+        // of stream is reported when no data can be read at all.
+        b[off] = (byte) decode();
+        for (int i = 1; i < len; i++)
+        {
+            try
             {
-                throw new EOFException(
-                    "Unexpected end of stream while reading huffman data");
+                b[off + i] = (byte) decode();
             }
-            if (bit == 0)
+            catch (final EOFException e)
+            {
+                return i;
+            }
+        }
+        return len;
+    }
+
+
+    /**
+     * Decodes the next byte.
+     *
+     * @return The decoded byte
+     * @throws IOException
+     *             When file operation fails or end of stream is reached.
+     */
+
+    private int decode() throws IOException
+    {
+        int offset, bits, index, entry, length;
+
+        offset = 0;
+        bits = HuffmanDecodeTable.PRIMARY_BITS;
+        while (true)
+        {
+            // Look up the table entry for the next bits. If there are not
+            // enough bits buffered then the missing bits are zero-padded. This
+            // is safe because a code which fits into the buffered bits results
+            // in the same entry for all paddings. So we never read more bytes
+            // from the underlying stream than really needed.
+            if (this.bitCount >= bits)
             {
-                node = node.getLeft();
+                index = this.bitBuffer >>> (this.bitCount - bits);
             }
             else
             {
-                node = node.getRight();
+                index = this.bitBuffer << (bits - this.bitCount);
+            }
+            entry = this.table[offset + (index & ((1 << bits) - 1))];
+
+            if (entry >= 0)
+            {
+                // The entry is a payload. Return it if the whole code is
+                // buffered.
+                length = entry >>> 8;
+                if (length <= this.bitCount)
+                {
+                    this.bitCount -= length;
+                    return entry & 0xff;
+                }
+            }
+            else if (this.bitCount >= bits)
+            {
+                // The entry points to a sub table for longer codes
+                this.bitCount -= bits;
+                offset = entry & ~HuffmanDecodeTable.SUB_TABLE;
+                bits = HuffmanDecodeTable.SUB_BITS;
+                continue;
+            }
+
+            // The code is longer than the buffered bits so read the next byte
+            final int b = this.bitStream.read();
+            if (b == -1)
+            {
+                throw new EOFException(
+                    "Unexpected end of stream while reading huffman data");
             }
+            this.bitBuffer = (this.bitBuffer << 8) | b;
+            this.bitCount += 8;
         }
-        return payload;
     }
 }
@@ -31,7 +31,7 @@ package de.ailis.wlandsuite.huffman;
  * @version $Revision$
  */
 
-public class HuffmanNode implements Comparable<HuffmanNode>
+public class HuffmanNode
 {
     /** The left sub node */
     private HuffmanNode left;
@@ -54,12 +54,6 @@ public class HuffmanNode implements Comparable<HuffmanNode>
     /** The propability */
     private int probability;
 
-    /** The id generator */
-    private static int nextId = 0;
-
-    /** The serial id */
-    private final int id = nextId++;
-
 
     /**
      * Constructor
@@ -256,33 +250,6 @@ public class HuffmanNode implements Comparable<HuffmanNode>
     }
 
 
-    /**
-     * Compares to Huffman Nodes.
-     *
-     * @param other
-     *            The other Huffman Node.
-     * @return The compare result
-     */
-
-    @Override
-    public int compareTo(final HuffmanNode other)
-    {
-        if (this.probability < other.probability)
-        {
-            return 1;
-        }
-        else if (this.probability > other.probability)
-        {
-            return -1;
-        }
-        else
-        {
-            return (Integer.valueOf(this.id).compareTo(Integer
-                .valueOf(other.id)));
-        }
-    }
-
-
     /**
      * Dumps the current node into the given string builder. Output is indented
      * by level*2 space characters. This method is used by toString() to
@@ -51,6 +51,12 @@ public class HuffmanOutputStream extends OutputStream
     /** The huffman tree */
     private final HuffmanTree tree;
 
+    /** The codes of the payloads */
+    private final int[] codes;
+
+    /** The code lengths of the payloads */
+    private final int[] codeLengths;
+
 
     /**
      * Constructor
@@ -68,6 +74,8 @@ public class HuffmanOutputStream extends OutputStream
     {
         this.bitStream = new BitOutputStreamWrapper(stream);
         this.tree = tree;
+        this.codes = tree.getCodes();
+        this.codeLengths = tree.getCodeLengths();
         this.tree.save(this.bitStream);
     }
 
@@ -79,16 +87,87 @@ public class HuffmanOutputStream extends OutputStream
     @Override
     public void write(final int b) throws IOException
     {
+        int payload, length;
 
-        final int payload = b < 0 ? b + 256 : b;
-
-        final HuffmanNode node = this.tree.getNode(payload);
-        if (node == null)
+        payload = b & 0xff;
+        length = this.codeLengths[payload];
+        if (length == -1)
         {
             throw new IOException("No huffman node found for payload "
                 + payload);
         }
-        final boolean[] fullKey = node.getFullKey();
+        if (length > 32)
+        {
+            writeFullKey(payload);
+        }
+        else
+        {
+            this.bitStream.writeBits(this.codes[payload], length, false);
+        }
+    }
+
+
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int[] codes, codeLengths;
+        long buffer;
+        int count, payload, length;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        codes = this.codes;
+        codeLengths = this.codeLengths;
+
+        // Collect the codes in a 64 bit buffer and pass them to the bit
+        // stream in chunks of 32 bits
+        buffer = 0;
+        count = 0;
+        for (int i = off, max = off + len; i < max; i++)
+        {
+            payload = b[i] & 0xff;
+            length = codeLengths[payload];
+            if (length == -1 || length > 32)
+            {
+                this.bitStream.writeBits((int) buffer, count, false);
+                count = 0;
+                write(payload);
+                continue;
+            }
+            buffer = (buffer << length) | (codes[payload] & 0xffffffffL);
+            count += length;
+            if (count > 31)
+            {
+                count -= 32;
+                this.bitStream.writeBits((int) (buffer >>> count), 32, false);
+            }
+        }
+        this.bitStream.writeBits((int) buffer, count, false);
+    }
+
+
+    /**
+     * Writes the code of the specified payload bit by bit. This is used for
+     * codes which are too long for the code table.
+     *
+     * @param payload
+     *            The payload
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private void writeFullKey(final int payload) throws IOException
+    {
+        boolean[] fullKey;
+
+        fullKey = this.tree.getNode(payload).getFullKey();
         for (int i = fullKey.length - 1; i >= 0; i--)
         {
             this.bitStream.writeBit(fullKey[i]);
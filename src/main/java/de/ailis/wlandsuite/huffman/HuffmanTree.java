@@ -23,13 +23,9 @@
 
 package de.ailis.wlandsuite.huffman;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Arrays;
 
 import de.ailis.wlandsuite.io.BitInputStream;
 import de.ailis.wlandsuite.io.BitInputStreamWrapper;
@@ -39,17 +35,49 @@ import de.ailis.wlandsuite.io.BitOutputStream;
 /**
  * Huffman Tree
  *
+ * The tree is stored in parallel arrays which are indexed by node number. Leaf
+ * nodes have no left and right sub node (-1) and internal nodes have no
+ * payload (-1). HuffmanNode objects are only created on demand when
+ * getRootNode() or getNode() is called.
+ *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
 public class HuffmanTree
 {
-    /** The root node of the huffman tree */
-    private HuffmanNode rootNode;
+    /** The initial node capacity. Enough for a tree with 256 payloads */
+    private static final int CAPACITY = 511;
+
+    /** The left sub nodes */
+    private int[] lefts = new int[CAPACITY];
+
+    /** The right sub nodes */
+    private int[] rights = new int[CAPACITY];
+
+    /** The payloads */
+    private int[] payloads = new int[CAPACITY];
+
+    /** The probabilities */
+    private int[] probabilities = new int[CAPACITY];
+
+    /** The number of nodes */
+    private int nodeCount;
+
+    /** The root node number */
+    private int root;
 
-    /** The index. Mapping payloads to nodes */
-    private final Map<Integer, HuffmanNode> index = new HashMap<Integer, HuffmanNode>();
+    /** The index. Mapping payloads to leaf node numbers */
+    private final int[] leaves = new int[256];
+
+    /** The codes of the payloads (Most significant bit first) */
+    private final int[] codes = new int[256];
+
+    /** The code lengths of the payloads. -1 if payload is not in the tree */
+    private final int[] codeLengths = new int[256];
+
+    /** The lazily created huffman nodes */
+    private HuffmanNode[] nodes;
 
 
     /**
@@ -59,6 +87,7 @@ public class HuffmanTree
     private HuffmanTree()
     {
         super();
+        Arrays.fill(this.leaves, -1);
     }
 
 
@@ -76,9 +105,20 @@ public class HuffmanTree
     public static HuffmanTree create(final InputStream stream) throws IOException
     {
         HuffmanTree tree;
+        int[] counter;
+        byte[] buffer;
+        int read;
+
+        // Read the stream and build the counter array
+        counter = new int[256];
+        buffer = new byte[4096];
+        while ((read = stream.read(buffer)) != -1)
+        {
+            count(counter, buffer, 0, read);
+        }
 
         tree = new HuffmanTree();
-        tree.createTree(stream);
+        tree.createTree(counter);
         return tree;
     }
 
@@ -92,25 +132,37 @@ public class HuffmanTree
 
     public static HuffmanTree create(final byte[] bytes)
     {
-        ByteArrayInputStream stream;
+        return create(bytes, 0, bytes.length);
+    }
 
-        try
-        {
-            stream = new ByteArrayInputStream(bytes);
-            try
-            {
-                return create(stream);
-            }
-            finally
-            {
-                stream.close();
-            }
-        }
-        catch (final IOException e)
+
+    /**
+     * Creates a huffman tree from a part of a byte array.
+     *
+     * @param bytes
+     *            The bytes to build the huffman tree for
+     * @param offset
+     *            The offset of the first byte to use
+     * @param length
+     *            The number of bytes to use
+     * @return The huffman tree
+     */
+
+    public static HuffmanTree create(final byte[] bytes, final int offset,
+        final int length)
+    {
+        HuffmanTree tree;
+        int[] counter;
+
+        if (offset < 0 || length < 0 || offset + length > bytes.length)
         {
-            // Ignored. Can't happen
-            return null;
+            throw new IndexOutOfBoundsException();
         }
+        counter = new int[256];
+        count(counter, bytes, offset, length);
+        tree = new HuffmanTree();
+        tree.createTree(counter);
+        return tree;
     }
 
 
@@ -142,54 +194,191 @@ public class HuffmanTree
 
 
     /**
-     * Creates the root node of the Huffman Tree.
+     * Counts the payloads in the specified part of a byte array.
      *
-     * @param stream
-     *            The input stream to build the root node for.
-     * @throws IOException
-     *             When file operation fails.
+     * @param counter
+     *            The payload counter to update
+     * @param bytes
+     *            The bytes to count
+     * @param offset
+     *            The offset of the first byte to count
+     * @param length
+     *            The number of bytes to count
      */
 
-    private void createTree(final InputStream stream) throws IOException
+    private static void count(final int[] counter, final byte[] bytes,
+        final int offset, final int length)
     {
-        int[] counter;
-        int b;
-        HuffmanNode node, left, right;
-        SortedSet<HuffmanNode> nodes;
-
-        // Read the stream and build the counter array
-        counter = new int[256];
-        while ((b = stream.read()) != -1)
+        for (int i = offset, max = offset + length; i < max; i++)
         {
-            counter[b]++;
+            counter[bytes[i] & 0xff]++;
         }
+    }
 
-        // Initialize the nodes with it's payloads and probabilities
-        nodes = new TreeSet<HuffmanNode>();
+
+    /**
+     * Creates the Huffman Tree for the specified payload counter. The two
+     * nodes with the lowest probabilities are merged until only the root node
+     * is left. Nodes with the same probability are ordered by node number and
+     * the node created last is merged first so the resulting tree is always
+     * the same for the same data.
+     *
+     * @param counter
+     *            The payload counter
+     */
+
+    private void createTree(final int[] counter)
+    {
+        int[] heap;
+        int heapSize;
+        int left, right;
+
+        // Initialize the leaf nodes with it's payloads and probabilities
+        heap = new int[256];
+        heapSize = 0;
         for (int i = 0; i < 256; i++)
         {
             if (counter[i] == 0) continue;
-            node = new HuffmanNode(i, counter[i]);
-            nodes.add(node);
-            this.index.put(i, node);
+            this.leaves[i] = addNode(-1, -1, i, counter[i]);
+            heap[heapSize] = this.leaves[i];
+            siftUp(heap, heapSize++);
+        }
+        if (heapSize == 0)
+        {
+            throw new IllegalArgumentException(
+                "Can't create huffman tree for empty data");
         }
 
         // Repeat until only one node (the root node) is left
-        while (nodes.size() > 1)
+        while (heapSize > 1)
         {
-            // Take the last two nodes from the list
-            left = nodes.last();
-            nodes.remove(left);
-            right = nodes.last();
-            nodes.remove(right);
-
-            // Create the parent node for them and add it to the list
-            node = new HuffmanNode(left, right);
-            nodes.add(node);
+            // Take the two nodes with the lowest probabilities
+            left = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+            right = heap[0];
+
+            // Create the parent node for them and put it into the heap
+            heap[0] = addNode(left, right, -1, this.probabilities[left]
+                + this.probabilities[right]);
+            siftDown(heap, heapSize);
         }
 
         // Save the root node
-        this.rootNode = nodes.first();
+        this.root = heap[0];
+        buildCodes();
+    }
+
+
+    /**
+     * Checks if node a must be merged before node b.
+     *
+     * @param a
+     *            The first node number
+     * @param b
+     *            The second node number
+     * @return True if node a must be merged before node b
+     */
+
+    private boolean before(final int a, final int b)
+    {
+        int pa, pb;
+
+        pa = this.probabilities[a];
+        pb = this.probabilities[b];
+        return pa < pb || (pa == pb && a > b);
+    }
+
+
+    /**
+     * Moves the heap entry at the specified position up until the heap order
+     * is restored.
+     *
+     * @param heap
+     *            The heap
+     * @param index
+     *            The position of the entry to move
+     */
+
+    private void siftUp(final int[] heap, final int index)
+    {
+        int node, parent, i;
+
+        node = heap[index];
+        i = index;
+        while (i > 0)
+        {
+            parent = (i - 1) >> 1;
+            if (!before(node, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = node;
+    }
+
+
+    /**
+     * Moves the first heap entry down until the heap order is restored.
+     *
+     * @param heap
+     *            The heap
+     * @param heapSize
+     *            The number of entries in the heap
+     */
+
+    private void siftDown(final int[] heap, final int heapSize)
+    {
+        int node, child, i;
+
+        node = heap[0];
+        i = 0;
+        while ((child = (i << 1) + 1) < heapSize)
+        {
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+            if (!before(heap[child], node)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+
+
+    /**
+     * Adds a new node to the tree and returns its number.
+     *
+     * @param left
+     *            The left sub node or -1 for a leaf node
+     * @param right
+     *            The right sub node or -1 for a leaf node
+     * @param payload
+     *            The payload or -1 for an internal node
+     * @param probability
+     *            The probability
+     * @return The node number
+     */
+
+    private int addNode(final int left, final int right, final int payload,
+        final int probability)
+    {
+        int node, capacity;
+
+        node = this.nodeCount++;
+        if (node == this.lefts.length)
+        {
+            capacity = this.lefts.length << 1;
+            this.lefts = Arrays.copyOf(this.lefts, capacity);
+            this.rights = Arrays.copyOf(this.rights, capacity);
+            this.payloads = Arrays.copyOf(this.payloads, capacity);
+            this.probabilities = Arrays.copyOf(this.probabilities, capacity);
+        }
+        this.lefts[node] = left;
+        this.rights[node] = right;
+        this.payloads[node] = payload;
+        this.probabilities[node] = probability;
+        return node;
     }
 
 
@@ -204,7 +393,51 @@ public class HuffmanTree
 
     private void loadTree(final BitInputStream stream) throws IOException
     {
-        this.rootNode = loadNode(stream);
+        this.root = loadNode(stream);
+        buildCodes();
+    }
+
+
+    /**
+     * Builds the code table which maps payloads to their codes and code
+     * lengths.
+     */
+
+    private void buildCodes()
+    {
+        Arrays.fill(this.codeLengths, -1);
+        buildCodes(this.root, 0, 0);
+    }
+
+
+    /**
+     * Recursively builds the code table for the specified node and its
+     * children. Codes longer than 32 bits can't be stored in the table so for
+     * these payloads only the code length is recorded.
+     *
+     * @param node
+     *            The current node number
+     * @param code
+     *            The code of the current node
+     * @param length
+     *            The code length of the current node
+     */
+
+    private void buildCodes(final int node, final int code, final int length)
+    {
+        int payload;
+
+        payload = this.payloads[node];
+        if (this.lefts[node] != -1)
+        {
+            buildCodes(this.lefts[node], code << 1, length + 1);
+            buildCodes(this.rights[node], (code << 1) | 1, length + 1);
+        }
+        else if (payload != -1)
+        {
+            this.codes[payload] = code;
+            this.codeLengths[payload] = length;
+        }
     }
 
 
@@ -219,7 +452,7 @@ public class HuffmanTree
 
     void save(final BitOutputStream bitStream) throws IOException
     {
-        saveNode(this.rootNode, bitStream);
+        saveNode(this.root, bitStream);
     }
 
 
@@ -227,68 +460,163 @@ public class HuffmanTree
      * Saves a huffman node to a bit stream.
      *
      * @param node
-     *            The huffman node to save
+     *            The number of the huffman node to save
      * @param bitStream
      *            The bit stream to write the node to
      * @throws IOException
      *             When file operation fails.
      */
 
-    private void saveNode(final HuffmanNode node, final BitOutputStream bitStream)
+    private void saveNode(final int node, final BitOutputStream bitStream)
         throws IOException
     {
-        int payload;
-
-        payload = node.getPayload();
-        if (payload == -1)
+        if (this.lefts[node] != -1)
         {
             bitStream.writeBit(false);
-            saveNode(node.getLeft(), bitStream);
+            saveNode(this.lefts[node], bitStream);
             bitStream.writeBit(false);
-            saveNode(node.getRight(), bitStream);
+            saveNode(this.rights[node], bitStream);
         }
         else
         {
             bitStream.writeBit(true);
-            bitStream.writeByte(payload);
+            bitStream.writeByte(this.payloads[node]);
         }
     }
 
 
     /**
-     * Builds a huffman node and returns it.
+     * Builds a huffman node and returns its number.
      *
      * @param stream
      *            The bit stream to read data from
-     * @return The huffman node
+     * @return The huffman node number
      * @throws IOException
      *             When file operation fails.
      */
 
-    private HuffmanNode loadNode(final BitInputStream stream) throws IOException
+    private int loadNode(final BitInputStream stream) throws IOException
     {
         int b;
-        HuffmanNode node;
+        int node;
 
         if (stream.readBit() == 0)
         {
-            HuffmanNode left, right;
+            int left, right;
 
             left = loadNode(stream);
             stream.readBit();
             right = loadNode(stream);
-            return new HuffmanNode(left, right);
+            return addNode(left, right, -1, 0);
         }
         else
         {
             b = stream.readByte();
-            node = new HuffmanNode(b);
-            this.index.put(Integer.valueOf(b), node);
+            node = addNode(-1, -1, b, 0);
+            if (b != -1)
+            {
+                this.leaves[b] = node;
+            }
             return node;
         }
     }
 
 
+    /**
+     * Returns the number of the root node.
+     *
+     * @return The root node number
+     */
+
+    int getRoot()
+    {
+        return this.root;
+    }
+
+
+    /**
+     * Returns the number of the left sub node of the specified node.
+     *
+     * @param node
+     *            The node number
+     * @return The left sub node number or -1 if node is a leaf
+     */
+
+    int getLeft(final int node)
+    {
+        return this.lefts[node];
+    }
+
+
+    /**
+     * Returns the number of the right sub node of the specified node.
+     *
+     * @param node
+     *            The node number
+     * @return The right sub node number or -1 if node is a leaf
+     */
+
+    int getRight(final int node)
+    {
+        return this.rights[node];
+    }
+
+
+    /**
+     * Returns the payload of the specified node.
+     *
+     * @param node
+     *            The node number
+     * @return The payload or -1 if node is not a leaf
+     */
+
+    int getPayload(final int node)
+    {
+        return this.payloads[node];
+    }
+
+
+    /**
+     * Creates the huffman node objects for the tree if not already done.
+     */
+
+    private synchronized void createNodes()
+    {
+        if (this.nodes == null)
+        {
+            this.nodes = new HuffmanNode[this.nodeCount];
+            createNode(this.root);
+        }
+    }
+
+
+    /**
+     * Recursively creates the huffman node object for the specified node.
+     *
+     * @param node
+     *            The node number
+     * @return The huffman node
+     */
+
+    private HuffmanNode createNode(final int node)
+    {
+        HuffmanNode huffmanNode;
+
+        if (this.lefts[node] != -1)
+        {
+            huffmanNode = new HuffmanNode(createNode(this.lefts[node]),
+                createNode(this.rights[node]));
+        }
+        else
+        {
+            huffmanNode = new HuffmanNode(this.payloads[node],
+                this.probabilities[node]);
+        }
+        this.nodes[node] = huffmanNode;
+        return huffmanNode;
+    }
+
+
     /**
      * Returns the root node of the huffman tree.
      *
@@ -297,7 +625,8 @@ public class HuffmanTree
 
     public HuffmanNode getRootNode()
     {
-        return this.rootNode;
+        createNodes();
+        return this.nodes[this.root];
     }
 
 
@@ -311,7 +640,38 @@ public class HuffmanTree
 
     public HuffmanNode getNode(final int payload)
     {
-        return this.index.get(Integer.valueOf(payload));
+        if (payload < 0 || payload > 255 || this.leaves[payload] == -1)
+        {
+            return null;
+        }
+        createNodes();
+        return this.nodes[this.leaves[payload]];
+    }
+
+
+    /**
+     * Returns the codes of all payloads. The bits of a code are ordered with
+     * the most significant bit first. The returned array must not be modified.
+     *
+     * @return The codes indexed by payload
+     */
+
+    int[] getCodes()
+    {
+        return this.codes;
+    }
+
+
+    /**
+     * Returns the code lengths of all payloads. -1 is used for payloads which
+     * are not part of the tree. The returned array must not be modified.
+     *
+     * @return The code lengths indexed by payload
+     */
+
+    int[] getCodeLengths()
+    {
+        return this.codeLengths;
     }
 
 
@@ -325,11 +685,12 @@ public class HuffmanTree
         StringBuilder builder;
 
         builder = new StringBuilder();
-        for (final HuffmanNode node: this.index.values())
+        for (int payload = 0; payload < 256; payload++)
         {
-            builder.append(node.getFullKeyName());
+            if (this.leaves[payload] == -1) continue;
+            builder.append(getNode(payload).getFullKeyName());
             builder.append("=");
-            builder.append(node.getPayload());
+            builder.append(payload);
             builder.append("\n");
         }
         return builder.toString();
@@ -56,7 +56,7 @@ public class BwImage extends PaletteImage
 
     public BwImage(final int width, final int height)
     {
-        super(width, height, TYPE_BYTE_BINARY, new IndexColorModel(4,
+        super(width, height, TYPE_BYTE_BINARY, new IndexColorModel(1,
             palette.length, palette, 0, false, -1, DataBuffer.TYPE_BYTE));
     }
 
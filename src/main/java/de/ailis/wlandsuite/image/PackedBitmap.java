@@ -0,0 +1,659 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.image;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+
+/**
+ * A lightweight bitmap which stores packed color indices in a plain byte
+ * array without any AWT objects. Pixels are packed with four bits (EGA colors)
+ * or one bit (black and white) per pixel. The first pixel is stored in the
+ * highest bits of a byte like in the Wasteland data files, so the codecs can
+ * read and write the bytes directly. A bitmap can also be a view on a region
+ * of a larger array (like a single tile of a tileset) in which case changes
+ * to the bitmap directly change the array. A read-only view can be created
+ * with asReadOnly().
+ *
+ * Bitmaps are only converted into palette images with toImage() when they
+ * are really needed as images (For example to write them as PNG).
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PackedBitmap
+{
+    /** The bitmap data */
+    private final byte[] data;
+
+    /** The offset of the bitmap in the data array */
+    private final int offset;
+
+    /** The bitmap width */
+    private final int width;
+
+    /** The bitmap height */
+    private final int height;
+
+    /** The number of bits per pixel (1 or 4) */
+    private final int pixelBits;
+
+    /** The bit mask of a single pixel */
+    private final int pixelMask;
+
+    /** The number of bytes per row */
+    private final int rowSize;
+
+    /** If the bitmap can't be modified */
+    private final boolean readOnly;
+
+
+    /**
+     * Constructor
+     *
+     * @param width
+     *            The bitmap width
+     * @param height
+     *            The bitmap height
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     */
+
+    public PackedBitmap(final int width, final int height, final int pixelBits)
+    {
+        this(new byte[getSize(width, height, pixelBits)], 0, width, height,
+            pixelBits, false);
+    }
+
+
+    /**
+     * Creates a bitmap view on the specified data. The data is not copied.
+     *
+     * @param data
+     *            The bitmap data
+     * @param offset
+     *            The offset of the bitmap in the data array
+     * @param width
+     *            The bitmap width
+     * @param height
+     *            The bitmap height
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     */
+
+    public PackedBitmap(final byte[] data, final int offset, final int width,
+        final int height, final int pixelBits)
+    {
+        this(data, offset, width, height, pixelBits, false);
+    }
+
+
+    /**
+     * Creates a bitmap from a normal buffered image. Colors are automatically
+     * converted to the EGA color palette (four bits per pixel) or to black
+     * and white (one bit per pixel).
+     *
+     * @param image
+     *            The normal buffered image
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     */
+
+    public PackedBitmap(final BufferedImage image, final int pixelBits)
+    {
+        this(convert(image, pixelBits), 0, image.getWidth(), image
+            .getHeight(), pixelBits, false);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The bitmap data
+     * @param offset
+     *            The offset of the bitmap in the data array
+     * @param width
+     *            The bitmap width
+     * @param height
+     *            The bitmap height
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     * @param readOnly
+     *            If the bitmap can't be modified
+     */
+
+    private PackedBitmap(final byte[] data, final int offset, final int width,
+        final int height, final int pixelBits, final boolean readOnly)
+    {
+        if (offset < 0
+            || offset + getSize(width, height, pixelBits) > data.length)
+        {
+            throw new IllegalArgumentException("Bitmap exceeds data array");
+        }
+        this.data = data;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+        this.pixelBits = pixelBits;
+        this.pixelMask = (1 << pixelBits) - 1;
+        this.rowSize = (width * pixelBits + 7) >> 3;
+        this.readOnly = readOnly;
+    }
+
+
+    /**
+     * Returns the number of bytes needed for a bitmap with the specified
+     * dimensions.
+     *
+     * @param width
+     *            The bitmap width
+     * @param height
+     *            The bitmap height
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     * @return The number of bytes
+     */
+
+    public static int getSize(final int width, final int height,
+        final int pixelBits)
+    {
+        if (pixelBits != 1 && pixelBits != 4)
+        {
+            throw new IllegalArgumentException("Unsupported number of bits "
+                + "per pixel: " + pixelBits);
+        }
+        if (width < 0 || height < 0)
+        {
+            throw new IllegalArgumentException("Invalid bitmap size: " + width
+                + "x" + height);
+        }
+        return ((width * pixelBits + 7) >> 3) * height;
+    }
+
+
+    /**
+     * Converts the specified buffered image into packed bitmap data.
+     *
+     * @param image
+     *            The buffered image
+     * @param pixelBits
+     *            The number of bits per pixel (1 or 4)
+     * @return The bitmap data
+     */
+
+    private static byte[] convert(final BufferedImage image,
+        final int pixelBits)
+    {
+        PaletteImage palImage;
+        byte[] bytes, data;
+        int width, height, rowSize, stride;
+
+        width = image.getWidth();
+        height = image.getHeight();
+        bytes = new byte[getSize(width, height, pixelBits)];
+        if (pixelBits == 1)
+        {
+            palImage = new BwImage(image);
+        }
+        else
+        {
+            palImage = new EgaImage(image);
+        }
+        rowSize = (width * pixelBits + 7) >> 3;
+        data = palImage.getRasterData();
+        stride = palImage.getScanlineStride();
+        for (int y = 0; y < height; y++)
+        {
+            System.arraycopy(data, y * stride, bytes, y * rowSize, rowSize);
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Converts this bitmap into a palette image. The pixels are copied so
+     * changes to the image do not change the bitmap. Bitmaps with four bits
+     * per pixel are converted into EGA images, bitmaps with one bit per pixel
+     * into black and white images.
+     *
+     * @return The palette image
+     */
+
+    public PaletteImage toImage()
+    {
+        PaletteImage image;
+        byte[] data;
+        int stride;
+
+        if (this.pixelBits == 1)
+        {
+            image = new BwImage(this.width, this.height);
+        }
+        else
+        {
+            image = new EgaImage(this.width, this.height);
+        }
+        data = image.getRasterData();
+        stride = image.getScanlineStride();
+        for (int y = 0; y < this.height; y++)
+        {
+            System.arraycopy(this.data, this.offset + y * this.rowSize, data, y
+                * stride, this.rowSize);
+        }
+        return image;
+    }
+
+
+    /**
+     * Returns a read-only view on this bitmap. The pixels are not copied, so
+     * changes to this bitmap are visible in the view but the view itself
+     * can't be modified.
+     *
+     * @return The read-only view
+     */
+
+    public PackedBitmap asReadOnly()
+    {
+        return new PackedBitmap(this.data, this.offset, this.width,
+            this.height, this.pixelBits, true);
+    }
+
+
+    /**
+     * Checks if this bitmap is read-only.
+     *
+     * @return True if the bitmap is read-only, false if not
+     */
+
+    public boolean isReadOnly()
+    {
+        return this.readOnly;
+    }
+
+
+    /**
+     * Returns a copy of this bitmap with its own data array. The copy can
+     * always be modified.
+     *
+     * @return The copy
+     */
+
+    public PackedBitmap copy()
+    {
+        PackedBitmap copy;
+
+        copy = new PackedBitmap(this.width, this.height, this.pixelBits);
+        System.arraycopy(this.data, this.offset, copy.data, 0, getSize());
+        return copy;
+    }
+
+
+    /**
+     * Copies the packed bytes of this bitmap into the specified array. The
+     * array must have room for getSize() bytes starting at the specified
+     * offset.
+     *
+     * @param bytes
+     *            The array to copy the bytes to
+     * @param offset
+     *            The offset in the array
+     */
+
+    public void copyBytes(final byte[] bytes, final int offset)
+    {
+        System.arraycopy(this.data, this.offset, bytes, offset, getSize());
+    }
+
+
+    /**
+     * Draws the specified bitmap into this bitmap. Both bitmaps must use the
+     * same number of bits per pixel and the drawn bitmap must fit into this
+     * bitmap. Whole rows are copied if the x position starts on a byte
+     * boundary.
+     *
+     * @param bitmap
+     *            The bitmap to draw
+     * @param x
+     *            The x position
+     * @param y
+     *            The y position
+     */
+
+    public void draw(final PackedBitmap bitmap, final int x, final int y)
+    {
+        int w, h;
+
+        checkWritable();
+        w = bitmap.width;
+        h = bitmap.height;
+        if (bitmap.pixelBits != this.pixelBits)
+        {
+            throw new IllegalArgumentException(
+                "Bitmap does not match the bitmap format");
+        }
+        if (w == 0 || h == 0)
+        {
+            return;
+        }
+        checkBounds(x, y);
+        checkBounds(x + w - 1, y + h - 1);
+        if ((x * this.pixelBits & 7) == 0 && (w * this.pixelBits & 7) == 0)
+        {
+            for (int row = 0; row < h; row++)
+            {
+                System.arraycopy(bitmap.data, bitmap.offset + row
+                    * bitmap.rowSize, this.data, this.offset + (y + row)
+                    * this.rowSize + ((x * this.pixelBits) >> 3),
+                    bitmap.rowSize);
+            }
+        }
+        else
+        {
+            for (int row = 0; row < h; row++)
+            {
+                for (int col = 0; col < w; col++)
+                {
+                    setPixel(x + col, y + row, bitmap.getPixel(col, row));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Checks if the bitmap can be modified.
+     */
+
+    private void checkWritable()
+    {
+        if (this.readOnly)
+        {
+            throw new UnsupportedOperationException("Bitmap is read-only");
+        }
+    }
+
+
+    /**
+     * Checks if the specified coordinates are inside of the bitmap.
+     *
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     */
+
+    private void checkBounds(final int x, final int y)
+    {
+        if (x < 0 || y < 0 || x >= this.width || y >= this.height)
+        {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of "
+                + "bounds: " + x + "," + y);
+        }
+    }
+
+
+    /**
+     * Returns the color index of a pixel.
+     *
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @return The color index
+     */
+
+    public int getPixel(final int x, final int y)
+    {
+        int bit;
+
+        checkBounds(x, y);
+        bit = x * this.pixelBits;
+        return (this.data[this.offset + y * this.rowSize + (bit >> 3)]
+            >> (8 - this.pixelBits - (bit & 7))) & this.pixelMask;
+    }
+
+
+    /**
+     * Sets the color index of a pixel.
+     *
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param color
+     *            The color index
+     */
+
+    public void setPixel(final int x, final int y, final int color)
+    {
+        int bit, index, shift;
+
+        checkWritable();
+        checkBounds(x, y);
+        bit = x * this.pixelBits;
+        index = this.offset + y * this.rowSize + (bit >> 3);
+        shift = 8 - this.pixelBits - (bit & 7);
+        this.data[index] = (byte) ((this.data[index] & ~(this.pixelMask
+            << shift)) | ((color & this.pixelMask) << shift));
+    }
+
+
+    /**
+     * Returns the width.
+     *
+     * @return The width
+     */
+
+    public int getWidth()
+    {
+        return this.width;
+    }
+
+
+    /**
+     * Returns the height.
+     *
+     * @return The height
+     */
+
+    public int getHeight()
+    {
+        return this.height;
+    }
+
+
+    /**
+     * Returns the number of bits per pixel.
+     *
+     * @return The number of bits per pixel
+     */
+
+    public int getPixelBits()
+    {
+        return this.pixelBits;
+    }
+
+
+    /**
+     * Returns the number of bytes per row.
+     *
+     * @return The number of bytes per row
+     */
+
+    public int getRowSize()
+    {
+        return this.rowSize;
+    }
+
+
+    /**
+     * Returns the number of bytes used by the bitmap.
+     *
+     * @return The number of bytes
+     */
+
+    public int getSize()
+    {
+        return this.rowSize * this.height;
+    }
+
+
+    /**
+     * Returns the data array. The bitmap starts at the offset returned by
+     * getOffset(). Changes to this array directly change the bitmap, so the
+     * array is not available for read-only bitmaps. Use copyBytes() to read
+     * their pixels.
+     *
+     * @return The data array
+     */
+
+    public byte[] getData()
+    {
+        checkWritable();
+        return this.data;
+    }
+
+
+    /**
+     * Returns the offset of the bitmap in the data array.
+     *
+     * @return The offset
+     */
+
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+
+    /**
+     * Returns the bit mask for the last byte of a row which masks out the
+     * unused bits behind the last pixel.
+     *
+     * @return The bit mask
+     */
+
+    private int getLastByteMask()
+    {
+        int bits;
+
+        bits = (this.width * this.pixelBits) & 7;
+        return bits == 0 ? 0xff : (0xff << (8 - bits)) & 0xff;
+    }
+
+
+    /**
+     * Returns the content hash of the bitmap. It is calculated from the
+     * bitmap format and the color indices of all pixels.
+     *
+     * @see java.lang.Object#hashCode()
+     */
+
+    @Override
+    public int hashCode()
+    {
+        int hash, mask, index, b;
+
+        mask = getLastByteMask();
+        hash = 17;
+        hash = hash * 37 + this.width;
+        hash = hash * 37 + this.height;
+        hash = hash * 37 + this.pixelBits;
+        for (int y = 0; y < this.height; y++)
+        {
+            index = this.offset + y * this.rowSize;
+            for (int i = 0; i < this.rowSize; i++)
+            {
+                b = this.data[index + i] & 0xff;
+                if (i == this.rowSize - 1)
+                {
+                    b &= mask;
+                }
+                hash = hash * 37 + b;
+            }
+        }
+        return hash;
+    }
+
+
+    /**
+     * Checks if the specified bitmap has the same format and the same pixels
+     * as this bitmap. The type of the bitmap and the read-only state are
+     * ignored.
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        PackedBitmap other;
+        int mask, index, otherIndex;
+
+        if (this == o)
+        {
+            return true;
+        }
+        if (o instanceof PackedBitmap == false)
+        {
+            return false;
+        }
+        other = (PackedBitmap) o;
+        if (this.width != other.width || this.height != other.height
+            || this.pixelBits != other.pixelBits)
+        {
+            return false;
+        }
+        mask = getLastByteMask();
+
+        // Without unused bits at the end of the rows the data can be
+        // compared in one go
+        if (mask == 0xff)
+        {
+            return Arrays.equals(this.data, this.offset, this.offset
+                + getSize(), other.data, other.offset, other.offset
+                + getSize());
+        }
+
+        for (int y = 0; y < this.height; y++)
+        {
+            index = this.offset + y * this.rowSize;
+            otherIndex = other.offset + y * this.rowSize;
+            if (!Arrays.equals(this.data, index, index + this.rowSize - 1,
+                other.data, otherIndex, otherIndex + this.rowSize - 1))
+            {
+                return false;
+            }
+            if (((this.data[index + this.rowSize - 1]
+                ^ other.data[otherIndex + this.rowSize - 1]) & mask) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
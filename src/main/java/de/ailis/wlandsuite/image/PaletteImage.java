@@ -24,10 +24,13 @@
 package de.ailis.wlandsuite.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
-
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 
 /**
@@ -39,6 +42,25 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 
 public abstract class PaletteImage extends BufferedImage
 {
+    /** The raster data */
+    private final byte[] data;
+
+    /** The number of bytes per row in the raster data */
+    private final int scanlineStride;
+
+    /** The number of bits per pixel (1, 2, 4 or 8) */
+    private final int pixelBits;
+
+    /** The bit mask of a single pixel */
+    private final int pixelMask;
+
+    /** The ARGB colors of all possible pixel values */
+    private final int[] colors;
+
+    /** If all pixel values have different colors */
+    private final boolean uniqueColors;
+
+
     /**
      * Constructor
      * 
@@ -54,26 +76,118 @@ public abstract class PaletteImage extends BufferedImage
 
     public PaletteImage(final int width, final int height, final int imageType, final IndexColorModel cm)
     {
-        super(width, height, imageType, cm);
+        this(cm, createRaster(width, height, imageType, cm));
     }
 
 
     /**
-     * Returns the palette index for the specified color. Returns -1 if the
-     * color was not found in the palette.
+     * Constructor
      * 
-     * @param color
-     *            The color
-     * @return The palette index
+     * @param cm
+     *            The color model
+     * @param raster
+     *            The raster created for the image type
      */
 
-    private int getPaletteIndex(final int color)
+    private PaletteImage(final IndexColorModel cm, final WritableRaster raster)
     {
-        for (int i = 0; i < getPalette().length; i++)
+        super(cm, raster, false, null);
+
+        SampleModel sampleModel;
+        int[] sorted;
+        boolean unique;
+
+        sampleModel = raster.getSampleModel();
+        if (sampleModel instanceof MultiPixelPackedSampleModel)
+        {
+            this.scanlineStride = ((MultiPixelPackedSampleModel) sampleModel)
+                .getScanlineStride();
+            this.pixelBits = ((MultiPixelPackedSampleModel) sampleModel)
+                .getPixelBitStride();
+        }
+        else
+        {
+            this.scanlineStride = ((ComponentSampleModel) sampleModel)
+                .getScanlineStride();
+            this.pixelBits = 8;
+        }
+        this.pixelMask = (1 << this.pixelBits) - 1;
+        this.data = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+        // Remember the colors of all pixel values so the RGB values of the
+        // pixels can be determined without asking the color model
+        this.colors = new int[1 << this.pixelBits];
+        for (int i = 0; i < this.colors.length; i++)
         {
-            if (getPalette()[i] == color) return i;
+            this.colors[i] = cm.getRGB(i);
         }
-        return -1;
+        sorted = this.colors.clone();
+        Arrays.sort(sorted);
+        unique = true;
+        for (int i = 1; i < sorted.length; i++)
+        {
+            if (sorted[i] == sorted[i - 1]) unique = false;
+        }
+        this.uniqueColors = unique;
+    }
+
+
+    /**
+     * Creates the raster for an image with the specified type and color model.
+     * The raster layout follows from the pixel size of the color model: Eight
+     * bit color models get one byte per pixel (TYPE_BYTE_INDEXED), smaller
+     * ones get packed pixels (TYPE_BYTE_BINARY).
+     * 
+     * @param width
+     *            The width
+     * @param height
+     *            The height
+     * @param imageType
+     *            The image type
+     * @param cm
+     *            The color model
+     * @return The raster
+     */
+
+    private static WritableRaster createRaster(final int width,
+        final int height, final int imageType, final IndexColorModel cm)
+    {
+        int expectedType;
+
+        expectedType = cm.getPixelSize() == 8 ? TYPE_BYTE_INDEXED
+            : TYPE_BYTE_BINARY;
+        if (imageType != expectedType)
+        {
+            throw new IllegalArgumentException("Image type " + imageType
+                + " does not match a " + cm.getPixelSize()
+                + " bit color model");
+        }
+        return cm.createCompatibleWritableRaster(width, height);
+    }
+
+
+    /**
+     * Returns the raster data array of the image. Changes to this array
+     * directly change the image.
+     * 
+     * @return The raster data
+     */
+
+    protected byte[] getRasterData()
+    {
+        return this.data;
+    }
+
+
+    /**
+     * Returns the number of bytes per row in the raster data.
+     * 
+     * @return The scanline stride
+     */
+
+    protected int getScanlineStride()
+    {
+        return this.scanlineStride;
     }
 
 
@@ -88,7 +202,8 @@ public abstract class PaletteImage extends BufferedImage
 
     /**
      * Sets a pixel. The difference to setRGB is that the color is the palette
-     * index (0-15) and not the RGB value.
+     * index (0-15) and not the RGB value. The index is written directly into
+     * the raster data.
      * 
      * @param x
      *            The x coordinate
@@ -100,13 +215,21 @@ public abstract class PaletteImage extends BufferedImage
 
     public void setPixel(final int x, final int y, final int color)
     {
-        setRGB(x, y, getPalette()[color]);
+        int bit, index, shift;
+
+        checkBounds(x, y);
+        bit = x * this.pixelBits;
+        index = y * this.scanlineStride + (bit >> 3);
+        shift = 8 - this.pixelBits - (bit & 7);
+        this.data[index] = (byte) ((this.data[index]
+            & ~(this.pixelMask << shift)) | ((color & this.pixelMask) << shift));
     }
 
 
     /**
      * Returns a pixel color. The difference to getRGB is that the color is the
-     * palette index (0-15) and not the RGB value.
+     * palette index (0-15) and not the RGB value. The index is read directly
+     * from the raster data.
      * 
      * @param x
      *            The x coordinate
@@ -117,22 +240,88 @@ public abstract class PaletteImage extends BufferedImage
 
     public int getPixel(final int x, final int y)
     {
-        return getPaletteIndex(getRGB(x, y));
+        int bit;
+
+        checkBounds(x, y);
+        bit = x * this.pixelBits;
+        return (this.data[y * this.scanlineStride + (bit >> 3)]
+            >> (8 - this.pixelBits - (bit & 7))) & this.pixelMask;
+    }
+
+
+    /**
+     * Checks if the specified coordinates are inside of the image.
+     * 
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     */
+
+    private void checkBounds(final int x, final int y)
+    {
+        if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight())
+        {
+            throw new ArrayIndexOutOfBoundsException(
+                "Coordinate out of bounds!");
+        }
+    }
+
+
+    /**
+     * Returns the ARGB color of the specified pixel. This is the same as
+     * getRGB() but without bounds checking and color model conversion.
+     * 
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @return The ARGB color
+     */
+
+    private int getColor(final int x, final int y)
+    {
+        int bit;
+
+        bit = x * this.pixelBits;
+        return this.colors[(this.data[y * this.scanlineStride + (bit >> 3)]
+            >> (8 - this.pixelBits - (bit & 7))) & this.pixelMask];
     }
 
 
     /**
+     * Returns the content hash of the image. This is calculated from the ARGB
+     * colors of all pixels so images of different types with the same
+     * content have the same hash code.
+     * 
      * @see java.lang.Object#hashCode()
      */
 
     @Override
     public int hashCode()
     {
-        return new HashCodeBuilder(17, 37).append(getPixels()).toHashCode();
+        int hash;
+        int w, h, x, y;
+
+        w = getWidth();
+        h = getHeight();
+        hash = 17;
+        for (y = 0; y < h; y++)
+        {
+            for (x = 0; x < w; x++)
+            {
+                hash = hash * 37 + getColor(x, y);
+            }
+        }
+        return hash;
     }
 
 
     /**
+     * Checks if the specified image has the same content as this image. The
+     * raster data is compared directly if both images have the same layout
+     * and palette. Otherwise the ARGB colors of the pixels are compared.
+     * 
      * @see java.lang.Object#equals(java.lang.Object)
      */
 
@@ -140,7 +329,8 @@ public abstract class PaletteImage extends BufferedImage
     public boolean equals(final Object o)
     {
         PaletteImage other;
-        
+        int w, h, x, y, size;
+
         if (o instanceof PaletteImage == false)
         {
             return false;
@@ -150,33 +340,65 @@ public abstract class PaletteImage extends BufferedImage
             return true;
         }
         other = (PaletteImage) o;
-        return new EqualsBuilder().append(getPixels(), other.getPixels())
-            .isEquals();
+        w = getWidth();
+        h = getHeight();
+        if (w * h != other.getWidth() * other.getHeight())
+        {
+            return false;
+        }
+        if (w != other.getWidth())
+        {
+            return equalsFlat(other);
+        }
+
+        // Compare the raster data if both images store the pixels the same
+        // way and there are no padding bits at the end of the rows
+        if (this.uniqueColors && this.pixelBits == other.pixelBits
+            && this.scanlineStride == other.scanlineStride
+            && this.scanlineStride * 8 == w * this.pixelBits
+            && Arrays.equals(this.colors, other.colors))
+        {
+            size = this.scanlineStride * h;
+            return Arrays.equals(this.data, 0, size, other.data, 0, size);
+        }
+
+        // Otherwise compare the pixel colors
+        for (y = 0; y < h; y++)
+        {
+            for (x = 0; x < w; x++)
+            {
+                if (getColor(x, y) != other.getColor(x, y)) return false;
+            }
+        }
+        return true;
     }
 
 
     /**
-     * Returns the pixels of the image.
+     * Compares the pixel colors of this image with the pixel colors of an
+     * image with the same number of pixels but different dimensions. The
+     * pixels are compared in row order.
      * 
-     * @return The image pixels
+     * @param other
+     *            The other image
+     * @return True if the pixel colors are equal, false if not
      */
 
-    private int[] getPixels()
+    private boolean equalsFlat(final PaletteImage other)
     {
-        int[] pixels;
-        int w, h, x, y;
+        int w, ow, size;
 
         w = getWidth();
-        h = getHeight();
-        pixels = new int[w * h];
-        for (y = 0; y < h; y++)
+        ow = other.getWidth();
+        size = w * getHeight();
+        for (int i = 0; i < size; i++)
         {
-            for (x = 0; x < w; x++)
+            if (getColor(i % w, i / w) != other.getColor(i % ow, i / ow))
             {
-                pixels[y * w + x] = getRGB(x, y);
+                return false;
             }
         }
-        return pixels;
+        return true;
     }
 
 
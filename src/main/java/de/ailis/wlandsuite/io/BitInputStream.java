@@ -39,11 +39,17 @@ import java.io.InputStream;
 
 public abstract class BitInputStream extends InputStream
 {
-    /** The current byte */
-    private int currentByte;
+    /**
+     * The bit buffer. Contains the bytes of the bits currently being read with
+     * the first byte in the lowest 8 bits
+     */
+    private long bitBuffer;
 
-    /** The current bit */
-    private byte currentBit = 7;
+    /** The number of bits in the bit buffer */
+    private int bitCount;
+
+    /** The number of bits in the bit buffer which have already been read */
+    private int bitPosition;
 
 
     /**
@@ -75,34 +81,31 @@ public abstract class BitInputStream extends InputStream
 
     public byte readBit(final boolean reverse) throws IOException
     {
-        if (this.currentBit > 6)
-        {
-            this.currentByte = read();
-            if (this.currentByte == -1)
-            {
-                return -1;
-            }
-            this.currentBit = 0;
-        }
-        else
-        {
-            this.currentBit++;
-        }
+        return (byte) readBits(1, reverse);
+    }
 
-        if (reverse)
-        {
-            return (byte) ((this.currentByte >> (this.currentBit)) & 1);
-        }
-        else
-        {
-            return (byte) ((this.currentByte >> (7 - this.currentBit)) & 1);
-        }
+
+    /**
+     * Returns the number of bits which are left in the current byte. If the
+     * stream is byte-aligned then 0 is returned.
+     *
+     * @return The number of remaining bits in the current byte
+     */
+
+    public int getBitsLeft()
+    {
+        return this.bitCount - this.bitPosition;
     }
 
 
     /**
      * Reads the specified number of bits. The bits can be read in reverse order
-     * if the reverse flag is set.
+     * if the reverse flag is set. Up to 32 bits can be read at once. Returns -1
+     * if there is no more data on the stream.
+     *
+     * Only the bytes which contain the requested bits are read from the
+     * stream. So it is still possible to continue reading with read() at the
+     * next byte boundary.
      *
      * @param quantity
      *            The number of bits to read
@@ -115,26 +118,52 @@ public abstract class BitInputStream extends InputStream
 
     public int readBits(final int quantity, final boolean reverse) throws IOException
     {
-        int value;
-        byte b;
+        int value, b, consumed;
 
-        value = 0;
-        for (int i = 0; i < quantity; i++)
+        if (quantity < 0 || quantity > 32)
         {
-            b = readBit(reverse);
+            throw new IllegalArgumentException("Can't read " + quantity
+                + " bits at once");
+        }
+        if (quantity == 0)
+        {
+            return 0;
+        }
+
+        // Fill the bit buffer with the bytes containing the requested bits
+        while (this.bitCount - this.bitPosition < quantity)
+        {
+            b = read();
             if (b == -1)
             {
+                this.bitBuffer = 0;
+                this.bitCount = 0;
+                this.bitPosition = 0;
                 return -1;
             }
-            if (reverse)
-            {
-                value = value | (b << i);
-            }
-            else
-            {
-                value = (value << 1) | b;
-            }
+            this.bitBuffer |= (long) b << this.bitCount;
+            this.bitCount += 8;
+        }
+
+        // Extract the bits. Reversed bits are read from the lowest bit of each
+        // byte, normal bits are read from the highest bit of each byte.
+        if (reverse)
+        {
+            value = (int) ((this.bitBuffer >>> this.bitPosition)
+                & ((1L << quantity) - 1));
+        }
+        else
+        {
+            value = (int) ((Long.reverseBytes(this.bitBuffer)
+                << this.bitPosition) >>> (64 - quantity));
         }
+
+        // Remove all completely read bytes from the bit buffer
+        this.bitPosition += quantity;
+        consumed = this.bitPosition & ~7;
+        this.bitBuffer >>>= consumed;
+        this.bitCount -= consumed;
+        this.bitPosition -= consumed;
         return value;
     }
 
@@ -152,27 +181,14 @@ public abstract class BitInputStream extends InputStream
 
     public int readByte() throws IOException
     {
-        int b;
-        byte bit;
-
         // If we are at a full byte align then read the byte right away
-        if (this.currentBit == 7)
+        if (this.bitPosition == this.bitCount)
         {
             return read();
         }
 
-        // Otherwise read 8 bits and construct a byte from it
-        b = 0;
-        for (int i = 0; i < 8; i++)
-        {
-            bit = readBit();
-            if (bit == -1)
-            {
-                return -1;
-            }
-            b = b << 1 | bit;
-        }
-        return b;
+        // Otherwise take the byte from the bit buffer
+        return readBits(8, false);
     }
 
 
@@ -62,6 +62,18 @@ public class BitInputStreamWrapper extends BitInputStream
     {
         return this.stream.read();
     }
+
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        return this.stream.read(b, off, len);
+    }
     
     
     /**
@@ -117,20 +117,31 @@ public abstract class BitOutputStream extends OutputStream
     public void writeBits(final int value, final int quantity, final boolean reverse)
         throws IOException
     {
-        byte b;
+        long buffer;
+        int count;
 
-        for (int i = 0; i < quantity; i++)
+        // Reversed bits are still written one by one
+        if (reverse)
         {
-            if (reverse)
-            {
-                b = (byte) ((value >> i) & 1);
-            }
-            else
+            for (int i = 0; i < quantity; i++)
             {
-                b = (byte) ((value >> (quantity - i - 1)) & 1);
+                writeBit((byte) ((value >> i) & 1), true);
             }
-            writeBit(b, reverse);
+            return;
+        }
+
+        // Append the bits to the pending bits of the current byte and write
+        // all completed bytes at once
+        buffer = ((long) this.currentByte << quantity)
+            | (value & ((1L << quantity) - 1));
+        count = this.currentBit + quantity;
+        while (count > 7)
+        {
+            count -= 8;
+            write((int) (buffer >>> count) & 0xff);
         }
+        this.currentByte = (int) buffer & ((1 << count) - 1);
+        this.currentBit = (byte) count;
     }
 
 
@@ -166,10 +177,7 @@ public abstract class BitOutputStream extends OutputStream
         }
         else
         {
-            for (int i = 7; i >= 0; i--)
-            {
-                writeBit((byte) ((b >> i) & 1));
-            }
+            writeBits(b, 8, false);
         }
     }
 
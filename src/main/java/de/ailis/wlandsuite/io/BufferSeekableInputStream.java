@@ -0,0 +1,179 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A seekable input stream which reads the content of a byte buffer. No byte
+ * cache is needed because the whole buffer can be accessed at any time, so
+ * seeking is free and bulk reads are copied straight from the buffer. Position
+ * 0 of this stream is the position of the buffer at construction time.
+ *
+ * The stream works on its own view of the buffer so the position of the
+ * specified buffer is not changed. Multiple streams can share the same
+ * buffer content as long as nobody writes to it.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class BufferSeekableInputStream extends SeekableInputStream
+{
+    /** The buffer */
+    private final ByteBuffer buffer;
+
+
+    /**
+     * Constructor
+     *
+     * @param buffer
+     *            The buffer to read. The stream reads the bytes between the
+     *            current position and the limit of the buffer
+     */
+
+    public BufferSeekableInputStream(final ByteBuffer buffer)
+    {
+        super();
+        this.buffer = buffer.slice();
+    }
+
+
+    /**
+     * Returns a read-only view of the specified region of the stream. The
+     * view shares the content of the stream but has its own position and
+     * limit. The position of the stream is not changed.
+     *
+     * @param offset
+     *            The offset of the region in the stream
+     * @param size
+     *            The size of the region
+     * @return The read-only view of the region
+     */
+
+    public ByteBuffer slice(final int offset, final int size)
+    {
+        return this.buffer.slice(offset, size).asReadOnlyBuffer();
+    }
+
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+
+    @Override
+    public int read()
+    {
+        if (!this.buffer.hasRemaining()) return -1;
+        return this.buffer.get() & 0xff;
+    }
+
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+    {
+        int read;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+        read = Math.min(len, this.buffer.remaining());
+        if (read == 0)
+        {
+            return -1;
+        }
+        this.buffer.get(b, off, read);
+        return read;
+    }
+
+
+    /**
+     * @see java.io.InputStream#skip(long)
+     */
+
+    @Override
+    public long skip(final long n)
+    {
+        int skipped;
+
+        if (n <= 0)
+        {
+            return 0;
+        }
+        skipped = (int) Math.min(n, this.buffer.remaining());
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+
+
+    /**
+     * @see java.io.InputStream#available()
+     */
+
+    @Override
+    public int available()
+    {
+        return this.buffer.remaining();
+    }
+
+
+    /**
+     * @see de.ailis.wlandsuite.io.SeekableInputStream#tell()
+     */
+
+    @Override
+    public long tell()
+    {
+        return this.buffer.position();
+    }
+
+
+    /**
+     * Seeks to the specified position. Seeking behind the end of the buffer
+     * positions the stream at the end of the buffer.
+     *
+     * @param position
+     *            The position to seek to
+     */
+
+    @Override
+    public void seek(final long position)
+    {
+        this.buffer.position((int) Math.max(0, Math.min(position, this.buffer
+            .limit())));
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        this.bitPosition = 0;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A seekable input stream which reads a memory-mapped region of a file. No
+ * byte cache is needed because the whole region can be accessed at any time,
+ * so seeking is free and bulk reads are copied straight from the mapped file.
+ * Position 0 of this stream is the start of the mapped region.
+ *
+ * The position of the file channel is not changed by this stream.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class MappedSeekableInputStream extends BufferSeekableInputStream
+{
+    /**
+     * Creates a stream for the rest of the file starting at the current
+     * position of the file channel.
+     *
+     * @param channel
+     *            The file channel
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public MappedSeekableInputStream(final FileChannel channel)
+        throws IOException
+    {
+        this(channel, channel.position(), channel.size() - channel.position());
+    }
+
+
+    /**
+     * Creates a stream for the specified region of a file.
+     *
+     * @param channel
+     *            The file channel
+     * @param offset
+     *            The offset of the region in the file
+     * @param size
+     *            The size of the region
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public MappedSeekableInputStream(final FileChannel channel,
+        final long offset, final long size) throws IOException
+    {
+        super(map(channel, offset, size));
+    }
+
+
+    /**
+     * Maps the specified region of a file into memory.
+     *
+     * @param channel
+     *            The file channel
+     * @param offset
+     *            The offset of the region in the file
+     * @param size
+     *            The size of the region
+     * @return The mapped region
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private static ByteBuffer map(final FileChannel channel,
+        final long offset, final long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("File region too large to be mapped: "
+                + size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+}
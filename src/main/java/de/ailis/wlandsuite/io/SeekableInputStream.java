@@ -23,15 +23,18 @@
 
 package de.ailis.wlandsuite.io;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 
 /**
  * This InputStream implementation wraps another InputStream and provides a byte
  * cache which allows seeking in the stream. Be careful! If you are reading lots
  * of data with this Class then you may have a large memory footprint because
- * all the data you read is cached in a byte array.
+ * all the data you read is cached in a byte array. Use create() to get a
+ * memory-mapped stream without a cache when reading from a regular file.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
@@ -51,11 +54,17 @@ public class SeekableInputStream extends InputStream
     /** The position in the stream */
     protected int position;
 
-    /** The current byte */
-    protected int currentByte;
+    /**
+     * The bit buffer. Contains the bytes of the bits currently being read with
+     * the first byte in the lowest 8 bits
+     */
+    protected long bitBuffer;
 
-    /** The current bit */
-    protected byte currentBit = 7;
+    /** The number of bits in the bit buffer */
+    protected int bitCount;
+
+    /** The number of bits in the bit buffer which have already been read */
+    protected int bitPosition;
 
 
     /**
@@ -73,6 +82,80 @@ public class SeekableInputStream extends InputStream
     }
 
 
+    /**
+     * Constructor for sub classes which don't use the stream and the byte
+     * cache.
+     */
+
+    protected SeekableInputStream()
+    {
+        this.stream = null;
+        this.cache = null;
+    }
+
+
+    /**
+     * Creates a seekable input stream for the specified stream. If the stream
+     * reads a regular file then the rest of the file is memory-mapped so no
+     * byte cache is needed. Otherwise the stream is wrapped into a caching
+     * seekable input stream.
+     *
+     * @param stream
+     *            The stream
+     * @return The seekable input stream
+     */
+
+    public static SeekableInputStream create(final InputStream stream)
+    {
+        return create(stream, 0);
+    }
+
+
+    /**
+     * Creates a seekable input stream for the specified stream. If the stream
+     * reads a regular file then the rest of the file is memory-mapped so no
+     * byte cache is needed. Otherwise the stream is wrapped into a seekable
+     * input stream which keeps the specified number of bytes in memory and
+     * spills older bytes into a temporary file. If the window size is 0 then
+     * all bytes are cached in memory.
+     *
+     * @param stream
+     *            The stream
+     * @param windowSize
+     *            The number of bytes to keep in memory or 0 for no limit
+     * @return The seekable input stream
+     */
+
+    public static SeekableInputStream create(final InputStream stream,
+        final int windowSize)
+    {
+        FileChannel channel;
+
+        if (stream instanceof FileInputStream)
+        {
+            channel = ((FileInputStream) stream).getChannel();
+            try
+            {
+                // Pipes and other special files report no usable size
+                if (channel.size() > channel.position()
+                    && channel.size() - channel.position() <= Integer.MAX_VALUE)
+                {
+                    return new MappedSeekableInputStream(channel);
+                }
+            }
+            catch (final IOException e)
+            {
+                // Ignored. Fall back to reading the stream
+            }
+        }
+        if (windowSize > 0)
+        {
+            return new SpillingSeekableInputStream(stream, windowSize);
+        }
+        return new SeekableInputStream(stream);
+    }
+
+
     /**
      * @see java.io.InputStream#read()
      */
@@ -96,6 +179,40 @@ public class SeekableInputStream extends InputStream
     }
 
 
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int read, cached;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        // Copy the already cached bytes
+        cached = Math.max(0, Math.min(len, this.size - this.position));
+        System.arraycopy(this.cache, this.position, b, off, cached);
+        this.position += cached;
+
+        // Read the rest from the underlying stream
+        read = cached;
+        if (read < len)
+        {
+            read += readReal(b, off + read, len - read);
+        }
+        return read == 0 ? -1 : read;
+    }
+
+
     /**
      * Reads a byte from the underlying input stream. The byte is also cached
      * and the cache is enlarged if needed.
@@ -125,6 +242,50 @@ public class SeekableInputStream extends InputStream
     }
 
 
+    /**
+     * Reads bytes from the underlying input stream until the requested number
+     * of bytes is read or the end of the stream is reached. The bytes are
+     * also cached and the cache is enlarged if needed. The stream position
+     * is moved behind the read bytes.
+     *
+     * @param b
+     *            The buffer to read the bytes into
+     * @param off
+     *            The offset in the buffer
+     * @param len
+     *            The number of bytes to read
+     * @return The number of read bytes
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    protected int readReal(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int read, count;
+
+        read = 0;
+        while (read < len)
+        {
+            count = this.stream.read(b, off + read, len - read);
+            if (count == -1) break;
+            read += count;
+        }
+        final int newSize = this.size + read;
+        if (newSize > this.cache.length)
+        {
+            final byte newCache[] = new byte[Math
+                .max(this.cache.length << 1, newSize)];
+            System.arraycopy(this.cache, 0, newCache, 0, this.size);
+            this.cache = newCache;
+        }
+        System.arraycopy(b, off, this.cache, this.size, read);
+        this.size = newSize;
+        this.position += read;
+        return read;
+    }
+
+
     /**
      * Returns the current position in the stream.
      *
@@ -161,8 +322,9 @@ public class SeekableInputStream extends InputStream
                 skip(rest);
             }
         }
-        this.currentByte = 0;
-        this.currentBit = 7;
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        this.bitPosition = 0;
     }
 
 
@@ -195,34 +357,18 @@ public class SeekableInputStream extends InputStream
 
     public byte readBit(final boolean reverse) throws IOException
     {
-        if (this.currentBit > 6)
-        {
-            this.currentByte = read();
-            if (this.currentByte == -1)
-            {
-                return -1;
-            }
-            this.currentBit = 0;
-        }
-        else
-        {
-            this.currentBit++;
-        }
-
-        if (reverse)
-        {
-            return (byte) ((this.currentByte >> (this.currentBit)) & 1);
-        }
-        else
-        {
-            return (byte) ((this.currentByte >> (7 - this.currentBit)) & 1);
-        }
+        return (byte) readBits(1, reverse);
     }
 
 
     /**
      * Reads the specified number of bits. The bits can be read in reverse order
-     * if the reverse flag is set.
+     * if the reverse flag is set. Up to 32 bits can be read at once. Returns -1
+     * if there is no more data on the stream.
+     *
+     * Only the bytes which contain the requested bits are read from the
+     * stream. So it is still possible to continue reading with read() at the
+     * next byte boundary.
      *
      * @param quantity
      *            The number of bits to read
@@ -235,26 +381,52 @@ public class SeekableInputStream extends InputStream
 
     public int readBits(final int quantity, final boolean reverse) throws IOException
     {
-        int value;
-        byte b;
+        int value, b, consumed;
+
+        if (quantity < 0 || quantity > 32)
+        {
+            throw new IllegalArgumentException("Can't read " + quantity
+                + " bits at once");
+        }
+        if (quantity == 0)
+        {
+            return 0;
+        }
 
-        value = 0;
-        for (int i = 0; i < quantity; i++)
+        // Fill the bit buffer with the bytes containing the requested bits
+        while (this.bitCount - this.bitPosition < quantity)
         {
-            b = readBit(reverse);
+            b = read();
             if (b == -1)
             {
+                this.bitBuffer = 0;
+                this.bitCount = 0;
+                this.bitPosition = 0;
                 return -1;
             }
-            if (reverse)
-            {
-                value = value | (b << i);
-            }
-            else
-            {
-                value = (value << 1) | b;
-            }
+            this.bitBuffer |= (long) b << this.bitCount;
+            this.bitCount += 8;
+        }
+
+        // Extract the bits. Reversed bits are read from the lowest bit of each
+        // byte, normal bits are read from the highest bit of each byte.
+        if (reverse)
+        {
+            value = (int) ((this.bitBuffer >>> this.bitPosition)
+                & ((1L << quantity) - 1));
         }
+        else
+        {
+            value = (int) ((Long.reverseBytes(this.bitBuffer)
+                << this.bitPosition) >>> (64 - quantity));
+        }
+
+        // Remove all completely read bytes from the bit buffer
+        this.bitPosition += quantity;
+        consumed = this.bitPosition & ~7;
+        this.bitBuffer >>>= consumed;
+        this.bitCount -= consumed;
+        this.bitPosition -= consumed;
         return value;
     }
 
@@ -272,27 +444,14 @@ public class SeekableInputStream extends InputStream
 
     public int readByte() throws IOException
     {
-        int b;
-        byte bit;
-
         // If we are at a full byte align then read the byte right away
-        if (this.currentBit == 7)
+        if (this.bitPosition == this.bitCount)
         {
             return read();
         }
 
-        // Otherwise read 8 bits and construct a byte from it
-        b = 0;
-        for (int i = 0; i < 8; i++)
-        {
-            bit = readBit();
-            if (bit == -1)
-            {
-                return -1;
-            }
-            b = b << 1 | bit;
-        }
-        return b;
+        // Otherwise take the byte from the bit buffer
+        return readBits(8, false);
     }
 
 
@@ -0,0 +1,328 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+
+/**
+ * A seekable input stream which keeps only a window with the most recently
+ * read bytes in memory. When the window is full then the older half of it is
+ * spilled into a temporary file. Seeking backwards into spilled regions reads
+ * the bytes from the temporary file. So the memory footprint is bounded by the
+ * window size no matter how much data is read from the stream.
+ *
+ * The temporary file is deleted when the stream is closed. Closing the stream
+ * does not close the underlying stream.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class SpillingSeekableInputStream extends SeekableInputStream
+{
+    /** The size of the buffer used to read single bytes from the spill file */
+    private static final int SPILL_BUFFER_SIZE = 4096;
+
+    /** The in-memory window */
+    private final byte[] window;
+
+    /** The stream position of the first byte in the window */
+    private long windowStart;
+
+    /** The number of bytes read from the underlying stream */
+    private long total;
+
+    /** The position in the stream */
+    private long current;
+
+    /** The spill file. Null as long as nothing has been spilled */
+    private File spillFile;
+
+    /** The random access to the spill file */
+    private RandomAccessFile spill;
+
+    /** The buffer for reading single bytes from the spill file */
+    private byte[] spillBuffer;
+
+    /** The stream position of the first byte in the spill buffer */
+    private long spillBufferStart;
+
+    /** The number of bytes in the spill buffer */
+    private int spillBufferSize;
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The stream
+     * @param windowSize
+     *            The number of bytes to keep in memory
+     */
+
+    public SpillingSeekableInputStream(final InputStream stream,
+        final int windowSize)
+    {
+        super();
+        if (windowSize < 2)
+        {
+            throw new IllegalArgumentException("Invalid window size: "
+                + windowSize);
+        }
+        this.stream = stream;
+        this.window = new byte[windowSize];
+    }
+
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+
+    @Override
+    public int read() throws IOException
+    {
+        int b;
+
+        if (this.current < this.windowStart)
+        {
+            b = readSpilled();
+        }
+        else if (this.current < this.total)
+        {
+            b = this.window[(int) (this.current - this.windowStart)] & 0xff;
+        }
+        else
+        {
+            b = this.stream.read();
+            if (b == -1) return -1;
+            spillIfFull();
+            this.window[(int) (this.total - this.windowStart)] = (byte) b;
+            this.total++;
+        }
+        this.current++;
+        return b;
+    }
+
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int read, count;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        read = 0;
+        while (read < len)
+        {
+            if (this.current < this.windowStart)
+            {
+                // Read spilled bytes from the spill file
+                count = (int) Math.min(len - read, this.windowStart
+                    - this.current);
+                this.spill.seek(this.current);
+                this.spill.readFully(b, off + read, count);
+            }
+            else if (this.current < this.total)
+            {
+                // Copy bytes from the window
+                count = (int) Math.min(len - read, this.total - this.current);
+                System.arraycopy(this.window, (int) (this.current
+                    - this.windowStart), b, off + read, count);
+            }
+            else
+            {
+                // Read new bytes from the underlying stream
+                count = this.stream.read(b, off + read, len - read);
+                if (count == -1) break;
+                append(b, off + read, count);
+            }
+            this.current += count;
+            read += count;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+
+    /**
+     * Reads the byte at the current position from the spill file. The bytes
+     * are read in blocks so reading spilled bytes one by one does not need a
+     * file access per byte.
+     *
+     * @return The byte
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private int readSpilled() throws IOException
+    {
+        if (this.current < this.spillBufferStart
+            || this.current >= this.spillBufferStart + this.spillBufferSize)
+        {
+            if (this.spillBuffer == null)
+            {
+                this.spillBuffer = new byte[SPILL_BUFFER_SIZE];
+            }
+            this.spillBufferStart = this.current;
+            this.spillBufferSize = (int) Math.min(SPILL_BUFFER_SIZE,
+                this.windowStart - this.current);
+            this.spill.seek(this.current);
+            this.spill.readFully(this.spillBuffer, 0, this.spillBufferSize);
+        }
+        return this.spillBuffer[(int) (this.current - this.spillBufferStart)]
+            & 0xff;
+    }
+
+
+    /**
+     * Appends bytes which have been read from the underlying stream to the
+     * window.
+     *
+     * @param b
+     *            The bytes to append
+     * @param off
+     *            The offset of the first byte to append
+     * @param len
+     *            The number of bytes to append
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private void append(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int appended, count, used;
+
+        appended = 0;
+        while (appended < len)
+        {
+            spillIfFull();
+            used = (int) (this.total - this.windowStart);
+            count = Math.min(len - appended, this.window.length - used);
+            System.arraycopy(b, off + appended, this.window, used, count);
+            this.total += count;
+            appended += count;
+        }
+    }
+
+
+    /**
+     * Spills the older half of the window into the spill file if the window
+     * is full. The spill file is created when it is needed for the first
+     * time.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private void spillIfFull() throws IOException
+    {
+        int half;
+
+        if (this.total - this.windowStart < this.window.length)
+        {
+            return;
+        }
+        if (this.spill == null)
+        {
+            this.spillFile = File.createTempFile("wlandsuite", ".spill");
+            this.spillFile.deleteOnExit();
+            this.spill = new RandomAccessFile(this.spillFile, "rw");
+        }
+        half = this.window.length / 2;
+        this.spill.seek(this.windowStart);
+        this.spill.write(this.window, 0, half);
+        System.arraycopy(this.window, half, this.window, 0, this.window.length
+            - half);
+        this.windowStart += half;
+    }
+
+
+    /**
+     * @see de.ailis.wlandsuite.io.SeekableInputStream#tell()
+     */
+
+    @Override
+    public long tell()
+    {
+        return this.current;
+    }
+
+
+    /**
+     * @see de.ailis.wlandsuite.io.SeekableInputStream#seek(long)
+     */
+
+    @Override
+    public void seek(final long position) throws IOException
+    {
+        if (position <= this.total)
+        {
+            this.current = position;
+        }
+        else
+        {
+            this.current = this.total;
+            skip(position - this.total);
+        }
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        this.bitPosition = 0;
+    }
+
+
+    /**
+     * Deletes the spill file. The underlying stream is not closed.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    @Override
+    public void close() throws IOException
+    {
+        if (this.spill != null)
+        {
+            this.spill.close();
+            this.spill = null;
+            this.spillFile.delete();
+            this.spillFile = null;
+        }
+    }
+}
@@ -33,17 +33,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import de.ailis.wlandsuite.image.BwImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
- * WLF mask.
+ * WLF mask. The pixels are stored in a packed bitmap with one bit per pixel.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision:81 $
  */
 
-public class Mask extends BwImage implements Cloneable
+public class Mask extends PackedBitmap implements Cloneable
 {
     /**
      * Constructor
@@ -56,7 +56,7 @@ public class Mask extends BwImage implements Cloneable
 
     public Mask(final int width, final int height)
     {
-        super(width, height);
+        super(width, height, 1);
     }
 
 
@@ -71,7 +71,7 @@ public class Mask extends BwImage implements Cloneable
 
     public Mask(final BufferedImage image)
     {
-        super(image);
+        super(image, 1);
     }
 
 
@@ -269,7 +269,7 @@ public class Mask extends BwImage implements Cloneable
         Mask dest;
 
         dest = new Mask(getWidth(), getHeight());
-        dest.createGraphics().drawImage(this, 0, 0, null);
+        copyBytes(dest.getData(), dest.getOffset());
         return dest;
     }
 }
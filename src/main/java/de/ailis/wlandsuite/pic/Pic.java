@@ -24,7 +24,6 @@
 package de.ailis.wlandsuite.pic;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,7 +31,7 @@ import java.io.OutputStream;
 
 import javax.imageio.ImageIO;
 
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
@@ -44,11 +43,16 @@ import de.ailis.wlandsuite.image.EgaImage;
  * simplest form of all the pictures it's the base for this class. So with this
  * class you can read and write this title pic right away.
  *
+ * The pixels are stored in a packed bitmap with four bits per pixel which has
+ * the same layout as the picture data, so the picture data is read and
+ * written without any conversion. Use toImage() to get a buffered image of
+ * the picture.
+ *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
-public class Pic extends EgaImage implements Cloneable
+public class Pic extends PackedBitmap implements Cloneable
 {
     /**
      * Constructor
@@ -61,7 +65,7 @@ public class Pic extends EgaImage implements Cloneable
 
     public Pic(final int width, final int height)
     {
-        super(width, height);
+        super(width, height, 4);
     }
 
 
@@ -76,7 +80,27 @@ public class Pic extends EgaImage implements Cloneable
 
     public Pic(final BufferedImage image)
     {
-        super(image);
+        super(image, 4);
+    }
+
+
+    /**
+     * Creates a picture from a packed bitmap with four bits per pixel. The
+     * pixels are copied.
+     *
+     * @param bitmap
+     *            The packed bitmap
+     * @return The picture
+     */
+
+    public static Pic fromBitmap(final PackedBitmap bitmap)
+    {
+        Pic pic;
+
+        checkBitmap(bitmap);
+        pic = new Pic(bitmap.getWidth(), bitmap.getHeight());
+        bitmap.copyBytes(pic.getData(), pic.getOffset());
+        return pic;
     }
 
 
@@ -120,35 +144,90 @@ public class Pic extends EgaImage implements Cloneable
     public static Pic read(final InputStream stream, final int width, final int height,
         final boolean encoded) throws IOException
     {
-        InputStream xorStream;
         Pic pic;
-        int b;
-        int x, y;
 
         pic = new Pic(width, height);
+        readBitmap(stream, pic, encoded);
+        return pic;
+    }
+
+
+    /**
+     * Reads xor-encoded or plain picture data from a stream directly into the
+     * specified packed bitmap. The bitmap must use four bits per pixel.
+     *
+     * @param stream
+     *            The input stream
+     * @param bitmap
+     *            The bitmap to read the picture data into
+     * @param encoded
+     *            If the picture data is xor-encoded
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public static void readBitmap(final InputStream stream,
+        final PackedBitmap bitmap, final boolean encoded) throws IOException
+    {
+        checkBitmap(bitmap);
+        readFully(stream, bitmap.getData(), bitmap.getOffset(), bitmap
+            .getSize());
         if (encoded)
         {
-            xorStream = new VerticalXorInputStream(stream, width);
+            VerticalXorCodec.decode(bitmap.getData(), bitmap.getOffset(),
+                bitmap.getRowSize(), bitmap.getHeight());
         }
-        else
+    }
+
+
+    /**
+     * Checks if the specified bitmap can be used as picture data.
+     *
+     * @param bitmap
+     *            The bitmap to check
+     */
+
+    private static void checkBitmap(final PackedBitmap bitmap)
+    {
+        if (bitmap.getPixelBits() != 4)
         {
-            xorStream = stream;
+            throw new IllegalArgumentException(
+                "Picture bitmaps must use four bits per pixel");
         }
-        for (y = 0; y < height; y++)
+    }
+
+
+    /**
+     * Reads the specified number of bytes from the stream.
+     *
+     * @param stream
+     *            The input stream
+     * @param bytes
+     *            The array to read the bytes into
+     * @param offset
+     *            The offset in the array
+     * @param length
+     *            The number of bytes to read
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private static void readFully(final InputStream stream, final byte[] bytes,
+        final int offset, final int length) throws IOException
+    {
+        int read, count;
+
+        read = 0;
+        while (read < length)
         {
-            for (x = 0; x < width; x += 2)
+            count = stream.read(bytes, offset + read, length - read);
+            if (count == -1)
             {
-                b = xorStream.read();
-                if (b == -1)
-                {
-                    throw new EOFException(
-                        "Unexpected end of stream while reading picture");
-                }
-                pic.setPixel(x, y, b >> 4);
-                pic.setPixel(x + 1, y, b & 0xf);
+                throw new EOFException(
+                    "Unexpected end of stream while reading picture");
             }
+            read += count;
         }
-        return pic;
     }
 
 
@@ -166,26 +245,13 @@ public class Pic extends EgaImage implements Cloneable
     public void write(final OutputStream stream, final boolean xorEncode)
         throws IOException
     {
-        int width, height;
-        int x, y;
-        OutputStream xorStream;
-
-        width = getWidth();
-        height = getHeight();
         if (xorEncode)
         {
-            xorStream = new VerticalXorOutputStream(stream, width);
+            stream.write(getBytes(true));
         }
         else
         {
-            xorStream = stream;
-        }
-        for (y = 0; y < height; y++)
-        {
-            for (x = 0; x < width; x += 2)
-            {
-                xorStream.write((getPixel(x, y) << 4) | getPixel(x + 1, y));
-            }
+            stream.write(getData(), getOffset(), getSize());
         }
     }
 
@@ -216,25 +282,138 @@ public class Pic extends EgaImage implements Cloneable
 
     public byte[] getBytes(final boolean xorEncode)
     {
-        ByteArrayOutputStream stream;
+        byte[] bytes;
 
-        stream = new ByteArrayOutputStream();
-        try
+        bytes = new byte[getSize()];
+        getBytes(bytes, 0, xorEncode);
+        return bytes;
+    }
+
+
+    /**
+     * Copies the bytes of the picture into the specified array. Each byte
+     * contains two pixels (high nibble first). The array must have room for
+     * width / 2 * height bytes starting at the specified offset.
+     *
+     * @param bytes
+     *            The array to copy the picture bytes to
+     * @param offset
+     *            The offset in the array
+     * @param xorEncode
+     *            If picture data should be vertical-xor encoded
+     */
+
+    public void getBytes(final byte[] bytes, final int offset,
+        final boolean xorEncode)
+    {
+        copyBytes(bytes, offset);
+        if (xorEncode)
         {
-            try
-            {
-                write(stream, xorEncode);
-                return stream.toByteArray();
-            }
-            finally
-            {
-                stream.close();
-            }
+            VerticalXorCodec.encode(bytes, offset, getRowSize(), getHeight());
+        }
+    }
+
+
+    /**
+     * Sets the pixels of the picture from the specified picture bytes. Each
+     * byte contains two pixels (high nibble first). The bytes are copied
+     * directly into the picture data.
+     *
+     * @param bytes
+     *            The picture bytes
+     * @param offset
+     *            The offset of the picture bytes in the array
+     * @param encoded
+     *            If the picture bytes are vertical-xor encoded
+     */
+
+    public void setBytes(final byte[] bytes, final int offset,
+        final boolean encoded)
+    {
+        System.arraycopy(bytes, offset, getData(), getOffset(), getSize());
+        if (encoded)
+        {
+            VerticalXorCodec.decode(getData(), getOffset(), getRowSize(),
+                getHeight());
         }
-        catch (final IOException e)
+    }
+
+
+    /**
+     * XORs the specified bytes into the picture data. Each byte contains two
+     * pixels. The offset is the byte offset in the picture data so the bytes
+     * automatically continue in the next row when the end of a row is
+     * reached.
+     *
+     * @param offset
+     *            The byte offset in the picture data
+     * @param xors
+     *            The bytes to XOR into the picture data
+     * @throws IndexOutOfBoundsException
+     *             When the bytes do not fit into the picture data
+     */
+
+    public void xorBytes(final int offset, final int[] xors)
+    {
+        int index;
+        byte[] data;
+
+        checkRange(offset, xors.length);
+        index = getOffset() + offset;
+        data = getData();
+        for (int i = 0; i < xors.length; i++)
+        {
+            data[index + i] ^= (byte) xors[i];
+        }
+    }
+
+
+    /**
+     * Writes the specified bytes into the picture data. Each byte contains two
+     * pixels. The offset is the byte offset in the picture data so the bytes
+     * automatically continue in the next row when the end of a row is
+     * reached.
+     *
+     * @param offset
+     *            The byte offset in the picture data
+     * @param bytes
+     *            The bytes to write
+     * @param bytesOffset
+     *            The offset of the first byte to write in the array
+     * @param length
+     *            The number of bytes to write
+     * @throws IndexOutOfBoundsException
+     *             When the bytes do not fit into the picture data
+     */
+
+    public void putBytes(final int offset, final byte[] bytes,
+        final int bytesOffset, final int length)
+    {
+        checkRange(offset, length);
+        System.arraycopy(bytes, bytesOffset, getData(), getOffset() + offset,
+            length);
+    }
+
+
+    /**
+     * Checks if the specified byte range is inside of the picture data. The
+     * data array may be shared with other bitmaps so a range exceeding the
+     * picture would silently modify them.
+     *
+     * @param offset
+     *            The byte offset in the picture data
+     * @param length
+     *            The number of bytes
+     * @throws IndexOutOfBoundsException
+     *             When the range is not inside of the picture data
+     */
+
+    private void checkRange(final int offset, final int length)
+    {
+        if (offset < 0 || length < 0 || offset > getSize() - length)
         {
-            // Ignored. Can't happen
-            return null;
+            throw new IndexOutOfBoundsException("Byte range out of bounds: "
+                + offset + "+" + length + " (Picture size: " + getSize() + ")");
         }
     }
 
@@ -264,7 +443,7 @@ public class Pic extends EgaImage implements Cloneable
         Pic dest;
 
         dest = new Pic(getWidth(), getHeight());
-        dest.createGraphics().drawImage(this, 0, 0, null);
+        copyBytes(dest.getData(), dest.getOffset());
         return dest;
     }
 
@@ -0,0 +1,260 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.pic;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+
+/**
+ * Diff engine for animation frames. It compares the packed picture data of
+ * two frames eight bytes at a time so unchanged spans are skipped quickly and
+ * emits the changed regions directly in the layout used by the PICS and CPA
+ * animation formats.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class PicDiff
+{
+    /** Access to byte arrays as little endian longs */
+    private static final VarHandle LONGS = MethodHandles
+        .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** The maximum number of bytes in a PICS XOR run */
+    private static final int MAX_XOR_RUN = 16;
+
+    /** The maximum address of a PICS XOR run */
+    private static final int MAX_XOR_ADDRESS = 0xfff;
+
+    /** The number of bytes in a CPA block */
+    private static final int BLOCK_SIZE = 4;
+
+    /** The number of CPA blocks per row used to calculate block offsets */
+    private static final int BLOCKS_PER_ROW = 320 / 8;
+
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+
+    private PicDiff()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Returns the index of the first byte in the specified range which is
+     * different in the two arrays. If there is no difference then the end of
+     * the range is returned.
+     *
+     * @param bytes1
+     *            The first array
+     * @param bytes2
+     *            The second array
+     * @param offset
+     *            The index of the first byte to compare
+     * @param end
+     *            The index behind the last byte to compare
+     * @return The index of the first different byte or the end of the range
+     */
+
+    public static int findChange(final byte[] bytes1, final byte[] bytes2,
+        final int offset, final int end)
+    {
+        int index;
+        long diff;
+
+        index = offset;
+        while (index + 8 <= end)
+        {
+            diff = (long) LONGS.get(bytes1, index)
+                ^ (long) LONGS.get(bytes2, index);
+            if (diff != 0)
+            {
+                return index + (Long.numberOfTrailingZeros(diff) >>> 3);
+            }
+            index += 8;
+        }
+        while (index < end && bytes1[index] == bytes2[index])
+        {
+            index++;
+        }
+        return index;
+    }
+
+
+    /**
+     * Builds the XOR runs which convert the first picture into the second one
+     * in the PICS animation frame layout. Each run starts with a 16 bit word
+     * containing the byte address in the lower 12 bits and the run length
+     * minus one in the upper 4 bits. It is followed by the XOR bytes. Changed
+     * bytes are merged into the previous run if they are separated by at
+     * most one unchanged byte and the run does not get longer than 16 bytes.
+     * The end of frame marker is not included.
+     *
+     * @param from
+     *            The picture to start from
+     * @param to
+     *            The picture to get to
+     * @return The XOR runs
+     */
+
+    public static byte[] getXorRuns(final Pic from, final Pic to)
+    {
+        ByteArrayOutputStream stream;
+        byte[] bytes1, bytes2;
+        int start, end, next, last;
+        int address;
+
+        checkSize(from, to);
+        bytes1 = from.getBytes(false);
+        bytes2 = to.getBytes(false);
+        end = bytes1.length;
+        stream = new ByteArrayOutputStream();
+        start = findChange(bytes1, bytes2, 0, end);
+        while (start < end)
+        {
+            if (start > MAX_XOR_ADDRESS)
+            {
+                throw new IllegalArgumentException(
+                    "Frame too large for 12 bit addresses");
+            }
+
+            // Extend the run as long as the next change is close enough
+            last = start + 1;
+            next = findChange(bytes1, bytes2, last, end);
+            while (next < end && next - last <= 1
+                && next + 1 - start <= MAX_XOR_RUN)
+            {
+                last = next + 1;
+                next = findChange(bytes1, bytes2, last, end);
+            }
+
+            // Write the run
+            address = ((last - start - 1) << 12) | start;
+            stream.write(address & 0xff);
+            stream.write(address >> 8);
+            for (int i = start; i < last; i++)
+            {
+                stream.write(bytes1[i] ^ bytes2[i]);
+            }
+            start = next;
+        }
+        return stream.toByteArray();
+    }
+
+
+    /**
+     * Builds the blocks which must be written to the base picture to get the
+     * animation frame in the CPA animation frame layout. A block contains
+     * eight pixels (four bytes). Each changed block is written as a 16 bit
+     * offset (calculated for a row width of 320 pixels) followed by the four
+     * bytes of the animation frame. If the last picture is specified then
+     * blocks which differ from the last picture are written, too. The end of
+     * frame marker is not included.
+     *
+     * @param base
+     *            The base picture
+     * @param frame
+     *            The animation frame
+     * @param last
+     *            The optional last picture. May be null
+     * @return The changed blocks
+     */
+
+    public static byte[] getBlockRuns(final Pic base, final Pic frame,
+        final Pic last)
+    {
+        ByteArrayOutputStream stream;
+        byte[] baseBytes, frameBytes, lastBytes;
+        int rowSize, end, index, next, block, offset;
+
+        checkSize(base, frame);
+        if (last != null)
+        {
+            checkSize(last, frame);
+        }
+        if (frame.getWidth() % 8 != 0)
+        {
+            throw new IllegalArgumentException(
+                "Frame width must be a multiple of 8");
+        }
+        baseBytes = base.getBytes(false);
+        frameBytes = frame.getBytes(false);
+        lastBytes = last == null ? null : last.getBytes(false);
+        rowSize = frame.getWidth() / 2;
+        end = frameBytes.length;
+        stream = new ByteArrayOutputStream();
+        index = 0;
+        while (true)
+        {
+            // Find the next byte which differs from the base picture or
+            // (before that) from the last picture
+            next = findChange(baseBytes, frameBytes, index, end);
+            if (lastBytes != null)
+            {
+                next = findChange(lastBytes, frameBytes, index, next);
+            }
+            if (next >= end)
+            {
+                break;
+            }
+
+            // Write the block containing the changed byte
+            block = next - next % BLOCK_SIZE;
+            offset = (block / rowSize) * BLOCKS_PER_ROW
+                + (block % rowSize) / BLOCK_SIZE;
+            stream.write(offset & 0xff);
+            stream.write(offset >> 8);
+            stream.write(frameBytes, block, BLOCK_SIZE);
+            index = block + BLOCK_SIZE;
+        }
+        return stream.toByteArray();
+    }
+
+
+    /**
+     * Checks if the two pictures have the same size.
+     *
+     * @param pic1
+     *            The first picture
+     * @param pic2
+     *            The second picture
+     */
+
+    private static void checkSize(final Pic pic1, final Pic pic2)
+    {
+        if (pic1.getWidth() != pic2.getWidth()
+            || pic1.getHeight() != pic2.getHeight())
+        {
+            throw new IllegalArgumentException(
+                "Pictures must have the same size");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.pic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+
+/**
+ * Bulk codec for vertical XOR encoded picture data. In encoded data each row
+ * (except the first one) is XORed with the previous decoded row. This codec
+ * encodes and decodes a whole picture in place and processes the rows eight
+ * bytes at a time.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class VerticalXorCodec
+{
+    /** Access to byte arrays as longs */
+    private static final VarHandle LONGS = MethodHandles
+        .byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+
+    private VerticalXorCodec()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Decodes vertical XOR encoded picture data in place.
+     *
+     * @param bytes
+     *            The picture data
+     * @param offset
+     *            The offset of the first row in the array
+     * @param rowSize
+     *            The number of bytes per row
+     * @param rows
+     *            The number of rows
+     */
+
+    public static void decode(final byte[] bytes, final int offset,
+        final int rowSize, final int rows)
+    {
+        int row;
+
+        // Each row is XORed with the already decoded previous row
+        row = offset + rowSize;
+        for (int y = 1; y < rows; y++)
+        {
+            xorRow(bytes, row, row - rowSize, rowSize);
+            row += rowSize;
+        }
+    }
+
+
+    /**
+     * Vertical XOR encodes picture data in place.
+     *
+     * @param bytes
+     *            The picture data
+     * @param offset
+     *            The offset of the first row in the array
+     * @param rowSize
+     *            The number of bytes per row
+     * @param rows
+     *            The number of rows
+     */
+
+    public static void encode(final byte[] bytes, final int offset,
+        final int rowSize, final int rows)
+    {
+        int row;
+
+        // Rows are encoded from bottom to top so each row is XORed with the
+        // still unencoded previous row
+        row = offset + (rows - 1) * rowSize;
+        for (int y = rows - 1; y > 0; y--)
+        {
+            xorRow(bytes, row, row - rowSize, rowSize);
+            row -= rowSize;
+        }
+    }
+
+
+    /**
+     * XORs a row with another row.
+     *
+     * @param bytes
+     *            The picture data
+     * @param row
+     *            The offset of the row to modify
+     * @param other
+     *            The offset of the row to XOR with
+     * @param rowSize
+     *            The number of bytes per row
+     */
+
+    private static void xorRow(final byte[] bytes, final int row,
+        final int other, final int rowSize)
+    {
+        int x;
+
+        for (x = 0; x + 8 <= rowSize; x += 8)
+        {
+            LONGS.set(bytes, row + x, (long) LONGS.get(bytes, row + x)
+                ^ (long) LONGS.get(bytes, other + x));
+        }
+        for (; x < rowSize; x++)
+        {
+            bytes[row + x] ^= bytes[other + x];
+        }
+    }
+}
@@ -112,6 +112,66 @@ public class VerticalXorInputStream extends InputStream
     }
 
 
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int read, count, value, x;
+        int[] lastLine;
+
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        // Read the encoded bytes directly into the buffer
+        read = 0;
+        while (read < len)
+        {
+            count = this.stream.read(b, off + read, len - read);
+            if (count == -1) break;
+            read += count;
+        }
+        if (read == 0)
+        {
+            return -1;
+        }
+
+        // Decode the bytes in place
+        lastLine = this.lastLine;
+        x = this.x;
+        for (int i = off, max = off + read; i < max; i++)
+        {
+            value = b[i] & 0xff;
+            if (this.y > 0)
+            {
+                value ^= lastLine[x];
+                b[i] = (byte) value;
+            }
+            lastLine[x] = value;
+            if (x < this.width - 1)
+            {
+                x++;
+            }
+            else
+            {
+                this.y++;
+                x = 0;
+            }
+        }
+        this.x = x;
+        return read;
+    }
+
+
     /**
      * @throws IOException
      *             When file operation fails.
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +42,7 @@ import de.ailis.wlandsuite.io.BitInputStreamWrapper;
 import de.ailis.wlandsuite.msq.MsqHeader;
 import de.ailis.wlandsuite.msq.MsqType;
 import de.ailis.wlandsuite.pic.Pic;
+import de.ailis.wlandsuite.utils.LongMap;
 
 
 /**
@@ -317,8 +319,8 @@ public class PicsAnimation
 
     private byte[] getAnimationData() throws IOException
     {
-        List<RawAnimationFrame> seenFrames;
-        boolean seen;
+        Map<RawAnimationFrame, Integer> seenFrames;
+        Integer seenFrameId;
         byte bytes[];
         int currentFrame, nextFrame;
         int delay;
@@ -327,12 +329,13 @@ public class PicsAnimation
         ByteArrayOutputStream dataStream;
         ByteArrayOutputStream animStream;
         RawAnimationFrame frame;
-        Map<String, RawAnimationFrame> rawFrames;
+        LongMap<RawAnimationFrame> rawFrames;
         int size;
-        String key;
+        long key;
 
-        // Create animation data
-        seenFrames = new ArrayList<RawAnimationFrame>();
+        // Create animation data. Already written raw frames are looked up by
+        // their content hash so equal frames are only written once
+        seenFrames = new HashMap<RawAnimationFrame, Integer>();
         headerStream = new ByteArrayOutputStream();
         dataStream = new ByteArrayOutputStream();
         newFrameId = 0;
@@ -353,23 +356,26 @@ public class PicsAnimation
 
                 frame = rawFrames.get(key);
 
-                frameId = seenFrames.indexOf(frame);
-                seen = frameId != -1;
-                if (!seen)
+                seenFrameId = seenFrames.get(frame);
+                if (seenFrameId == null)
                 {
                     frameId = newFrameId;
                     newFrameId++;
                 }
+                else
+                {
+                    frameId = seenFrameId.intValue();
+                }
 
                 // Add instructions to header stream
                 headerStream.write(delay);
                 headerStream.write(frameId);
 
                 // Write the rawframe to the data stream
-                if (!seen)
+                if (seenFrameId == null)
                 {
                     frame.write(dataStream);
-                    seenFrames.add(frame);
+                    seenFrames.put(frame, Integer.valueOf(frameId));
                 }
 
                 // Process next frame
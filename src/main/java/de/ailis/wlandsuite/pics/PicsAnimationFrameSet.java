@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 
 import de.ailis.wlandsuite.pic.Pic;
+import de.ailis.wlandsuite.pic.PicDiff;
+import de.ailis.wlandsuite.utils.LongMap;
 
 
 /**
@@ -53,6 +55,18 @@ public class PicsAnimationFrameSet
     /** The animation instructions */
     private final List<PicsAnimationInstruction> instructions;
 
+    /** The frame index. Maps content hashes to frame indices */
+    private final Map<Integer, List<Integer>> frameIndex;
+
+    /** The number of frames which are already in the frame index */
+    private int indexedFrames;
+
+    /** The base frame for which the content hash is cached */
+    private Pic hashedBaseFrame;
+
+    /** The cached content hash of the base frame */
+    private int baseFrameHash;
+
 
     /**
      * Constructor
@@ -62,6 +76,7 @@ public class PicsAnimationFrameSet
     {
         this.frames = new ArrayList<Pic>();
         this.instructions = new ArrayList<PicsAnimationInstruction>();
+        this.frameIndex = new HashMap<Integer, List<Integer>>();
     }
 
 
@@ -79,6 +94,7 @@ public class PicsAnimationFrameSet
     {
         this.frames = frames;
         this.instructions = instructions;
+        this.frameIndex = new HashMap<Integer, List<Integer>>();
     }
 
 
@@ -119,22 +135,23 @@ public class PicsAnimationFrameSet
 
 
     /**
-     * Returns the raw animation frames for this frame set. Map key is a string
-     * in to format "fromFrame-toFrame". Example: "0-1" to indicate the raw
-     * frame is updating frame 0 to get to frame 1.
+     * Returns the raw animation frames for this frame set. Map key is the
+     * packed frame combination as returned by getRawFrameKey(). Example:
+     * getRawFrameKey(0, 1) to get the raw frame which is updating frame 0 to
+     * get to frame 1.
      * 
      * @param baseFrame
      *            The base frame
      * @return The raw animation frames.
      */
 
-    public Map<String, RawAnimationFrame> getRawFrames(final Pic baseFrame)
+    public LongMap<RawAnimationFrame> getRawFrames(final Pic baseFrame)
     {
-        Map<String, RawAnimationFrame> rawFrames;
-        String key;
+        LongMap<RawAnimationFrame> rawFrames;
+        long key;
         int currentFrame, nextFrame;
 
-        rawFrames = new HashMap<String, RawAnimationFrame>();
+        rawFrames = new LongMap<RawAnimationFrame>();
         currentFrame = 0;
         for (final PicsAnimationInstruction instruction: this.instructions)
         {
@@ -185,9 +202,9 @@ public class PicsAnimationFrameSet
 
 
     /**
-     * Returns an array with the diff values of two frames. The array is two
-     * dimensional array. The first index is the y coordinate and the second is
-     * the x corrdinate. Each array entry holds the byte for two pixels.
+     * Returns the animation frame parts which convert the first frame into
+     * the second frame. The changed regions are calculated by the PicDiff
+     * engine which already merges them into runs of up to 16 XOR bytes.
      * 
      * @param frame1
      *            The first frame to compare
@@ -198,44 +215,34 @@ public class PicsAnimationFrameSet
 
     private List<RawAnimationFramePart> getDiff(final Pic frame1, final Pic frame2)
     {
-        int x, y;
-        int w, h;
         List<RawAnimationFramePart> diff;
-        RawAnimationFramePart last, current;
-        int xor;
-        
-        w = frame1.getWidth();
-        h = frame1.getHeight();
+        byte[] runs;
+        int i;
+        int address;
+        int[] xors;
+
+        runs = PicDiff.getXorRuns(frame1, frame2);
         diff = new ArrayList<RawAnimationFramePart>();
-        last = null;
-        for (y = 0; y < h; y++)
+        i = 0;
+        while (i < runs.length)
         {
-            for (x = 0; x < w; x += 2)
+            address = (runs[i] & 0xff) | ((runs[i + 1] & 0xff) << 8);
+            xors = new int[((address >> 12) & 0xf) + 1];
+            for (int j = 0; j < xors.length; j++)
             {
-                xor = (((frame1.getPixel(x, y) ^ frame2.getPixel(x,
-                    y))) << 4)
-                    | (frame1.getPixel(x + 1, y) ^ frame2.getPixel(x + 1, y));
-                if (xor != 0)
-                {
-                    current = new RawAnimationFramePart((y * w +x) / 2, new int[] { xor }, 0);
-                    if (last != null && last.isMergable(current))
-                    {
-                        last.merge(current);
-                    }
-                    else
-                    {
-                        diff.add(current);
-                        last = current;
-                    }
-                }
+                xors[j] = runs[i + 2 + j] & 0xff;
             }
+            diff.add(new RawAnimationFramePart(address & 0xfff, xors, 0));
+            i += 2 + xors.length;
         }
         return diff;
     }
 
 
     /**
-     * Returns the raw animation frame map key.
+     * Returns the raw animation frame map key. The lower frame number is
+     * packed into the upper 32 bits and the higher frame number into the
+     * lower 32 bits of the key.
      * 
      * @param frame1
      *            The first frame
@@ -244,13 +251,13 @@ public class PicsAnimationFrameSet
      * @return The map key
      */
 
-    public static String getRawFrameKey(final int frame1, final int frame2)
+    public static long getRawFrameKey(final int frame1, final int frame2)
     {
         int lowFrame, highFrame;
 
         lowFrame = Math.min(frame1, frame2);
         highFrame = Math.max(frame1, frame2);
-        return lowFrame + "-" + highFrame;
+        return ((long) lowFrame << 32) | (highFrame & 0xffffffffL);
     }
 
 
@@ -260,6 +267,9 @@ public class PicsAnimationFrameSet
      * list -1. If the frame is unknown then -1 is returned so the caller can
      * add the new frame to the list of frames.
      * 
+     * Frames are looked up by their content hash. The pixels are only
+     * compared for frames with the same hash.
+     * 
      * @param workingFrame
      *            The working frmae
      * @param baseFrame
@@ -269,15 +279,44 @@ public class PicsAnimationFrameSet
 
     private int getFrameIndex(final Pic workingFrame, final Pic baseFrame)
     {
-        if (workingFrame.equals(baseFrame))
+        int hash;
+        List<Integer> candidates;
+
+        // Add the frames which are not yet indexed to the frame index
+        while (this.indexedFrames < this.frames.size())
+        {
+            hash = this.frames.get(this.indexedFrames).hashCode();
+            candidates = this.frameIndex.get(hash);
+            if (candidates == null)
+            {
+                candidates = new ArrayList<Integer>(1);
+                this.frameIndex.put(hash, candidates);
+            }
+            candidates.add(this.indexedFrames);
+            this.indexedFrames++;
+        }
+
+        // Calculate the content hash of the base frame only once
+        if (this.hashedBaseFrame != baseFrame)
+        {
+            this.hashedBaseFrame = baseFrame;
+            this.baseFrameHash = baseFrame.hashCode();
+        }
+
+        hash = workingFrame.hashCode();
+        if (hash == this.baseFrameHash && workingFrame.equals(baseFrame))
         {
             return 0;
         }
-        for (int i = 0; i < this.frames.size(); i++)
+        candidates = this.frameIndex.get(hash);
+        if (candidates != null)
         {
-            if (this.frames.get(i).equals(workingFrame))
+            for (final int i: candidates)
             {
-                return i + 1;
+                if (this.frames.get(i).equals(workingFrame))
+                {
+                    return i + 1;
+                }
             }
         }
         return -1;
@@ -29,9 +29,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
-
 import de.ailis.wlandsuite.pic.Pic;
 
 
@@ -153,7 +150,7 @@ public class RawAnimationFrame
     @Override
     public int hashCode()
     {
-        return new HashCodeBuilder(17, 37).append(this.parts).toHashCode();
+        return 17 * 37 + this.parts.hashCode();
     }
 
 
@@ -175,7 +172,6 @@ public class RawAnimationFrame
             return true;
         }
         other = (RawAnimationFrame) o;
-        return new EqualsBuilder().append(
-            this.parts, other.parts).isEquals();
+        return this.parts.equals(other.parts);
     }
 }
@@ -26,9 +26,7 @@ package de.ailis.wlandsuite.pics;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import java.util.Arrays;
 
 import de.ailis.wlandsuite.pic.Pic;
 
@@ -81,30 +79,7 @@ public class RawAnimationFramePart
 
     public void apply(final Pic image)
     {
-        int x, y;
-        int xor;
-
-        x = (this.offset * 2) % image.getWidth();
-        y = (this.offset * 2) / image.getWidth();
-        for (final int xors: this.diff)
-        {
-            xor = (xors >> 4) & 0x0f;
-            image.setPixel(x, y, image.getPixel(x, y) ^ xor);
-            x++;
-            if (x >= image.getWidth())
-            {
-                x = 0;
-                y++;
-            }
-            xor = xors & 0x0f;
-            image.setPixel(x, y, image.getPixel(x, y) ^ xor);
-            x++;
-            if (x >= image.getWidth())
-            {
-                x = 0;
-                y++;
-            }
-        }
+        image.xorBytes(this.offset, this.diff);
     }
 
 
@@ -208,8 +183,14 @@ public class RawAnimationFramePart
     @Override
     public int hashCode()
     {
-        return new HashCodeBuilder(17, 37).append(this.offset)
-            .append(this.diff).toHashCode();
+        int hash;
+
+        hash = 17 * 37 + this.offset;
+        for (final int xors: this.diff)
+        {
+            hash = hash * 37 + xors;
+        }
+        return hash;
     }
 
 
@@ -231,8 +212,8 @@ public class RawAnimationFramePart
             return true;
         }
         other = (RawAnimationFramePart) o;
-        return new EqualsBuilder().append(this.offset, other.offset).append(
-            this.diff, other.diff).isEquals();
+        return this.offset == other.offset
+            && Arrays.equals(this.diff, other.diff);
     }
 
 
@@ -29,17 +29,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
- * A sprite.
+ * A sprite. The pixels are stored in a packed bitmap with four bits per pixel.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
-public class Sprite extends EgaImage
+public class Sprite extends PackedBitmap
 {
     /**
      * Constructor
@@ -52,7 +52,7 @@ public class Sprite extends EgaImage
 
     public Sprite(final int width, final int height)
     {
-        super(width, height);
+        super(width, height, 4);
     }
 
 
@@ -66,7 +66,7 @@ public class Sprite extends EgaImage
 
     public Sprite(final BufferedImage image)
     {
-        super(image);
+        super(image, 4);
     }
 
 
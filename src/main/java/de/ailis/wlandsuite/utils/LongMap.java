@@ -0,0 +1,188 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.utils;
+
+
+/**
+ * A hash map with primitive long keys. The entries are stored in open
+ * addressing tables with linear probing so no key objects and no entry objects
+ * are created when putting values into the map or looking them up.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ * @param <V>
+ *            The value type
+ */
+
+public final class LongMap<V>
+{
+    /** The keys */
+    private long[] keys;
+
+    /** The values. A null value marks an unused slot */
+    private Object[] values;
+
+    /** The number of entries in the map */
+    private int size;
+
+
+    /**
+     * Constructor
+     */
+
+    public LongMap()
+    {
+        this(16);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param capacity
+     *            The expected number of entries
+     */
+
+    public LongMap(final int capacity)
+    {
+        int slots;
+
+        slots = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+        this.keys = new long[slots];
+        this.values = new Object[slots];
+    }
+
+
+    /**
+     * Returns the slot for the specified key. This is either the slot which
+     * contains the key or the free slot where the key must be inserted.
+     *
+     * @param key
+     *            The key
+     * @return The slot
+     */
+
+    private int getSlot(final long key)
+    {
+        int mask, slot;
+        long hash;
+
+        mask = this.keys.length - 1;
+        hash = key * 0x9e3779b97f4a7c15L;
+        slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (this.values[slot] != null && this.keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+
+    /**
+     * Returns the value for the specified key. Returns null if there is no
+     * value for this key.
+     *
+     * @param key
+     *            The key
+     * @return The value or null if not found
+     */
+
+    @SuppressWarnings("unchecked")
+    public V get(final long key)
+    {
+        return (V) this.values[getSlot(key)];
+    }
+
+
+    /**
+     * Checks if the map contains a value for the specified key.
+     *
+     * @param key
+     *            The key
+     * @return True if the map contains the key, false if not
+     */
+
+    public boolean containsKey(final long key)
+    {
+        return this.values[getSlot(key)] != null;
+    }
+
+
+    /**
+     * Puts a value into the map. Null values are not allowed.
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value
+     * @return The previous value or null if there was none
+     */
+
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value)
+    {
+        int slot;
+        Object old;
+
+        if (value == null)
+        {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        slot = getSlot(key);
+        old = this.values[slot];
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (old == null && ++this.size * 2 > this.keys.length)
+        {
+            grow();
+        }
+        return (V) old;
+    }
+
+
+    /**
+     * Doubles the number of slots and re-inserts all entries.
+     */
+
+    private void grow()
+    {
+        long[] oldKeys;
+        Object[] oldValues;
+        int slot;
+
+        oldKeys = this.keys;
+        oldValues = this.values;
+        this.keys = new long[oldKeys.length << 1];
+        this.values = new Object[oldValues.length << 1];
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                slot = getSlot(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -23,7 +23,6 @@
 
 package de.ailis.wlandsuite.cpa;
 
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -70,7 +69,7 @@ public class CpaTest extends WSTestCase
     {
         File file;
         Cpa cpa;
-        BufferedImage image;
+        Pic image;
 
         file = new File("src/test/resources/cpa/test.cpa");
         cpa = Cpa.read(new FileInputStream(file));
@@ -34,7 +34,7 @@ import javax.imageio.ImageIO;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
-import de.ailis.wlandsuite.image.EgaImage;
+import de.ailis.wlandsuite.image.PackedBitmap;
 import de.ailis.wlandsuite.test.WSTestCase;
 
 
@@ -96,18 +96,18 @@ public class CursTest extends WSTestCase
         Curs curs;
         List<Cursor> cursors;
         ByteArrayOutputStream stream;
-        EgaImage cursor, mask;
+        PackedBitmap cursor, mask;
 
         cursors = new ArrayList<Cursor>();
-        cursor = new EgaImage(ImageIO.read(new File(
-            "src/test/resources/curs/test/000.png")));
-        mask = new EgaImage(ImageIO.read(new File(
-            "src/test/resources/curs/test/000_mask.png")));
+        cursor = new PackedBitmap(ImageIO.read(new File(
+            "src/test/resources/curs/test/000.png")), 4);
+        mask = new PackedBitmap(ImageIO.read(new File(
+            "src/test/resources/curs/test/000_mask.png")), 4);
         cursors.add(new Cursor(cursor, mask));
-        cursor = new EgaImage(ImageIO.read(new File(
-            "src/test/resources/curs/test/001.png")));
-        mask = new EgaImage(ImageIO.read(new File(
-            "src/test/resources/curs/test/001_mask.png")));
+        cursor = new PackedBitmap(ImageIO.read(new File(
+            "src/test/resources/curs/test/001.png")), 4);
+        mask = new PackedBitmap(ImageIO.read(new File(
+            "src/test/resources/curs/test/001_mask.png")), 4);
         cursors.add(new Cursor(cursor, mask));
 
         curs = new Curs(cursors);
@@ -0,0 +1,475 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import de.ailis.wlandsuite.game.blocks.GameMap;
+import de.ailis.wlandsuite.game.blocks.Savegame;
+import de.ailis.wlandsuite.game.blocks.ShopItemList;
+import de.ailis.wlandsuite.game.parts.BattleStrings;
+import de.ailis.wlandsuite.game.parts.Info;
+import de.ailis.wlandsuite.game.parts.Monsters;
+import de.ailis.wlandsuite.game.parts.NPCs;
+import de.ailis.wlandsuite.game.parts.Strings;
+import de.ailis.wlandsuite.game.parts.TileMap;
+
+
+/**
+ * Tests the Game class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class GameTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(GameTest.class);
+    }
+
+
+    /**
+     * Opens the specified test resource.
+     *
+     * @param name
+     *            The resource name
+     * @return The input stream
+     */
+
+    private InputStream getResource(final String name)
+    {
+        return getClass().getClassLoader().getResourceAsStream(name);
+    }
+
+
+    /**
+     * Builds a game file with three maps, a savegame and a shop item list
+     * from the test resources.
+     *
+     * @return The game file data
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private byte[] createGameData() throws IOException
+    {
+        ByteArrayOutputStream output;
+
+        output = new ByteArrayOutputStream();
+        createGame().write(output, 1);
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Builds a game with three maps, a savegame and a shop item list from the
+     * test resources.
+     *
+     * @return The game
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private Game createGame() throws IOException
+    {
+        Game game;
+        InputStream stream;
+
+        game = new Game();
+        for (int i = 0; i < 3; i++)
+        {
+            stream = getResource("map/test");
+            game.addMap(GameMap.readHacked(stream));
+            stream.close();
+        }
+        stream = getResource("savegame/test");
+        game.setSavegame(Savegame.readHacked(stream));
+        stream.close();
+        stream = getResource("items/test");
+        game.addShopItemList(ShopItemList.readHacked(stream));
+        stream.close();
+        return game;
+    }
+
+
+    /**
+     * Tests reading a game eagerly.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testRead() throws IOException
+    {
+        Game game;
+        ByteArrayOutputStream output;
+        byte[] data;
+
+        data = createGameData();
+        game = Game.read(new ByteArrayInputStream(data));
+        assertEquals(3, game.getMapCount());
+        assertEquals(1, game.getShopItemLists().length);
+        assertNotNull(game.getSavegame());
+        output = new ByteArrayOutputStream();
+        game.write(output, 1);
+        assertTrue(Arrays.equals(data, output.toByteArray()));
+    }
+
+
+    /**
+     * Tests opening a game lazily.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testOpen() throws IOException
+    {
+        Game game, eager;
+        ByteArrayOutputStream output;
+        byte[] data;
+
+        data = createGameData();
+        game = Game.open(new ByteArrayInputStream(data), 0, true);
+        try
+        {
+            assertEquals(3, game.getMapCount());
+            eager = Game.read(new ByteArrayInputStream(data));
+            assertEquals(eager.getMap(1).getMapSize(), game.getMap(1)
+                .getMapSize());
+
+            output = new ByteArrayOutputStream();
+            game.write(output, 1);
+            assertTrue(Arrays.equals(data, output.toByteArray()));
+        }
+        finally
+        {
+            game.close();
+        }
+    }
+
+
+    /**
+     * Tests loading a lazily opened game before closing it.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testLoad() throws IOException
+    {
+        Game game;
+        ByteArrayOutputStream output;
+        byte[] data;
+
+        data = createGameData();
+        game = Game.open(new ByteArrayInputStream(data), 0, false);
+        assertSame(game.getMap(1), game.getMap(1));
+        game.load();
+        game.close();
+        assertEquals(3, game.getMaps().length);
+        assertNotNull(game.getSavegame());
+        output = new ByteArrayOutputStream();
+        game.write(output, 1);
+        assertTrue(Arrays.equals(data, output.toByteArray()));
+    }
+
+
+    /**
+     * Tests that a map which can't be decoded is reported with the same I/O
+     * exception no matter if the game is read sequentially, concurrently or
+     * loaded after opening it lazily.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadTruncated() throws IOException
+    {
+        Game game;
+        byte[] data;
+
+        // The last 5500 bytes hold the savegame, the shop item list and the
+        // end of the huffman data of the last map
+        data = createGameData();
+        data = Arrays.copyOf(data, data.length - 5500);
+
+        try
+        {
+            Game.read(new ByteArrayInputStream(data));
+            fail("Truncated game was read");
+        }
+        catch (final EOFException e)
+        {
+            // Expected
+        }
+        try
+        {
+            Game.read(new ByteArrayInputStream(data), 0, ForkJoinPool
+                .commonPool());
+            fail("Truncated game was read");
+        }
+        catch (final EOFException e)
+        {
+            // Expected
+        }
+        game = Game.open(new ByteArrayInputStream(data), 0, true);
+        try
+        {
+            game.load();
+            fail("Truncated game was loaded");
+        }
+        catch (final EOFException e)
+        {
+            // Expected
+        }
+        finally
+        {
+            game.close();
+        }
+    }
+
+
+    /**
+     * Tests reading a game with concurrently decoded maps from a memory
+     * stream and from a memory-mapped file.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadParallel() throws IOException
+    {
+        Game game;
+        ExecutorService executor;
+        ByteArrayOutputStream output;
+        OutputStream fileOutput;
+        InputStream fileInput;
+        File file;
+        byte[] data;
+
+        data = createGameData();
+        game = Game.read(new ByteArrayInputStream(data), 0, ForkJoinPool
+            .commonPool());
+        assertEquals(3, game.getMapCount());
+        output = new ByteArrayOutputStream();
+        game.write(output, 1);
+        assertTrue(Arrays.equals(data, output.toByteArray()));
+
+        file = File.createTempFile("game", ".dat");
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        try
+        {
+            fileOutput = new FileOutputStream(file);
+            fileOutput.write(data);
+            fileOutput.close();
+            fileInput = new FileInputStream(file);
+            try
+            {
+                game = Game.read(fileInput, 0, executor);
+            }
+            finally
+            {
+                fileInput.close();
+            }
+            assertEquals(3, game.getMapCount());
+            output = new ByteArrayOutputStream();
+            game.write(output, 1);
+            assertTrue(Arrays.equals(data, output.toByteArray()));
+        }
+        finally
+        {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+
+    /**
+     * Tests writing a game with concurrently encoded blocks.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testWriteParallel() throws IOException
+    {
+        ByteArrayOutputStream output;
+        byte[] data;
+
+        data = createGameData();
+        output = new ByteArrayOutputStream();
+        createGame().write(output, 1, ForkJoinPool.commonPool());
+        assertTrue(Arrays.equals(data, output.toByteArray()));
+    }
+
+
+    /**
+     * Writes the game and returns the logged messages in the order in which
+     * they were logged.
+     *
+     * @param game
+     *            The game to write
+     * @param executor
+     *            The executor which encodes the blocks or null to encode them
+     *            sequentially
+     * @return The logged messages
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private List<String> writeLogged(final Game game,
+        final ExecutorService executor) throws IOException
+    {
+        final List<String> messages;
+        Logger logger;
+        Handler handler;
+        boolean useParentHandlers;
+
+        messages = Collections.synchronizedList(new ArrayList<String>());
+        handler = new Handler()
+        {
+            @Override
+            public void publish(final LogRecord record)
+            {
+                messages.add(record.getMessage());
+            }
+
+
+            @Override
+            public void flush()
+            {
+                // Nothing to do
+            }
+
+
+            @Override
+            public void close()
+            {
+                // Nothing to do
+            }
+        };
+
+        logger = Logger.getLogger(Game.class.getName());
+        useParentHandlers = logger.getUseParentHandlers();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        try
+        {
+            game.write(new ByteArrayOutputStream(), 1, executor);
+        }
+        finally
+        {
+            logger.removeHandler(handler);
+            logger.setUseParentHandlers(useParentHandlers);
+        }
+        return messages;
+    }
+
+
+    /**
+     * Tests that the tile map warnings of concurrently encoded maps are
+     * logged in block order. The first and the last map overflow, the map in
+     * between does not.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testWriteParallelWarnings() throws IOException
+    {
+        Game game;
+        GameMap map;
+        InputStream stream;
+        List<String> expected;
+        String tooMuchData, tooLarge;
+
+        map = new GameMap(32, 3000, 2000);
+        map.setInfo(new Info());
+        map.setBattleStrings(new BattleStrings());
+        map.setNpcs(new NPCs());
+        map.setMonsters(new Monsters());
+        map.setStrings(new Strings());
+        map.setTileMap(new TileMap(32));
+
+        game = new Game();
+        stream = getResource("map/test");
+        game.addMap(GameMap.readHacked(stream));
+        stream.close();
+        game.addMap(map);
+        stream = getResource("map/test");
+        game.addMap(GameMap.readHacked(stream));
+        stream.close();
+        stream = getResource("savegame/test");
+        game.setSavegame(Savegame.readHacked(stream));
+        stream.close();
+        stream = getResource("items/test");
+        game.addShopItemList(ShopItemList.readHacked(stream));
+        stream.close();
+
+        tooMuchData = "Too much data before tile map. Fixing offsets in "
+            + "wl.exe is needed to run this game file";
+        tooLarge = "Tilemap too large. Fixing offsets in wl.exe is needed "
+            + "to run this game file";
+        expected = Arrays.asList(new String[] { "Writing map 0", tooMuchData,
+            tooLarge, "Writing map 1", "Writing map 2", tooMuchData,
+            tooLarge, "Writing savegame", "Writing shop item list 0" });
+
+        assertEquals(expected, writeLogged(game, null));
+        for (int run = 0; run < 20; run++)
+        {
+            assertEquals(expected, writeLogged(game, ForkJoinPool
+                .commonPool()));
+        }
+    }
+}
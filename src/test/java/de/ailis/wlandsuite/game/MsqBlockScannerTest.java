@@ -0,0 +1,105 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the MsqBlockScanner class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class MsqBlockScannerTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(MsqBlockScannerTest.class);
+    }
+
+
+    /**
+     * Tests scanning a stream with signatures at word boundaries and across
+     * the end of a read chunk. Signatures directly following a broken partial
+     * match are not recognized, same as in the original byte-wise scanner.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testScan() throws IOException
+    {
+        ByteArrayOutputStream stream;
+        int[] blocks;
+
+        stream = new ByteArrayOutputStream();
+        stream.write("msq1abcdmsq1xyzmmsq1msmsq1".getBytes());
+        stream.write(new byte[65536 - stream.size() - 2]);
+        stream.write("msq1msq0".getBytes());
+        blocks = MsqBlockScanner.scan(new ByteArrayInputStream(stream
+            .toByteArray()));
+        assertEquals(6, blocks.length);
+        assertEquals(0, blocks[0]);
+        assertEquals(8, blocks[1]);
+        assertEquals(8, blocks[2]);
+        assertEquals(65534 - 8, blocks[3]);
+        assertEquals(65534, blocks[4]);
+        assertEquals(8, blocks[5]);
+    }
+
+
+    /**
+     * Tests scanning a stream with an invalid header.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testInvalidHeader() throws IOException
+    {
+        try
+        {
+            MsqBlockScanner.scan(new ByteArrayInputStream("abcd".getBytes()));
+            fail("Expected IOException");
+        }
+        catch (final IOException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the RotatingXorCipher class against the byte-wise cipher of the
+ * original streams.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class RotatingXorCipherTest extends TestCase
+{
+    /** The number of random runs per test */
+    private static final int RUNS = 2000;
+
+    /** The random generator. Seeded so failures can be reproduced */
+    private Random random;
+
+
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(RotatingXorCipherTest.class);
+    }
+
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+
+    @Override
+    protected void setUp()
+    {
+        this.random = new Random(0x1f);
+    }
+
+
+    /**
+     * Returns random bytes. The arrays are up to three key stream periods
+     * long so the key stream wraps at least once in most runs.
+     *
+     * @return The random bytes
+     */
+
+    private byte[] createBytes()
+    {
+        byte[] bytes;
+
+        bytes = new byte[this.random.nextInt(800)];
+        this.random.nextBytes(bytes);
+        return bytes;
+    }
+
+
+    /**
+     * Tests decrypting random bytes at random offsets and lengths with random
+     * keys.
+     */
+
+    public void testDecrypt()
+    {
+        byte[] bytes, expected;
+        int offset, length, key, enc, checksum, sum;
+
+        for (int run = 0; run < RUNS; run++)
+        {
+            bytes = createBytes();
+            offset = this.random.nextInt(bytes.length + 1);
+            length = this.random.nextInt(bytes.length - offset + 1);
+            key = this.random.nextInt(256);
+
+            expected = bytes.clone();
+            enc = key;
+            checksum = 0;
+            for (int i = offset; i < offset + length; i++)
+            {
+                expected[i] ^= enc;
+                checksum = (checksum - (expected[i] & 0xff)) & 0xffff;
+                enc = (enc + 0x1f) & 0xff;
+            }
+
+            sum = RotatingXorCipher.decrypt(bytes, offset, length, key);
+            assertTrue(Arrays.equals(expected, bytes));
+            assertEquals(checksum, -sum & 0xffff);
+            assertEquals(enc, RotatingXorCipher.nextKey(key, length));
+        }
+    }
+
+
+    /**
+     * Tests encrypting random bytes at random offsets and lengths with random
+     * keys and decrypting them again.
+     */
+
+    public void testEncrypt()
+    {
+        byte[] bytes, original, expected;
+        int offset, length, key, enc;
+
+        for (int run = 0; run < RUNS; run++)
+        {
+            bytes = createBytes();
+            offset = this.random.nextInt(bytes.length + 1);
+            length = this.random.nextInt(bytes.length - offset + 1);
+            key = this.random.nextInt(256);
+
+            original = bytes.clone();
+            expected = bytes.clone();
+            enc = key;
+            for (int i = offset; i < offset + length; i++)
+            {
+                expected[i] ^= enc;
+                enc = (enc + 0x1f) & 0xff;
+            }
+
+            RotatingXorCipher.encrypt(bytes, offset, length, key);
+            assertTrue(Arrays.equals(expected, bytes));
+            RotatingXorCipher.decrypt(bytes, offset, length, key);
+            assertTrue(Arrays.equals(original, bytes));
+        }
+    }
+
+
+    /**
+     * Tests adding up random bytes at random offsets and lengths.
+     */
+
+    public void testSum()
+    {
+        byte[] bytes;
+        int offset, length, sum;
+
+        for (int run = 0; run < RUNS; run++)
+        {
+            bytes = createBytes();
+            offset = this.random.nextInt(bytes.length + 1);
+            length = this.random.nextInt(bytes.length - offset + 1);
+
+            sum = 0;
+            for (int i = offset; i < offset + length; i++)
+            {
+                sum += bytes[i] & 0xff;
+            }
+            assertEquals(sum, RotatingXorCipher.sum(bytes, offset, length));
+        }
+
+        // All bytes set to the maximum value must not overflow the lanes
+        bytes = new byte[1000];
+        Arrays.fill(bytes, (byte) 0xff);
+        assertEquals(999 * 0xff, RotatingXorCipher.sum(bytes, 1, 999));
+    }
+
+
+    /**
+     * Tests that splitting a block at any position produces the same result
+     * as decrypting it at once, with the key advanced by nextKey().
+     */
+
+    public void testSplit()
+    {
+        byte[] bytes, expected, parts;
+        int key, split, sum, splitSum;
+
+        bytes = new byte[600];
+        this.random.nextBytes(bytes);
+        for (key = 0; key < 256; key += 37)
+        {
+            expected = bytes.clone();
+            sum = RotatingXorCipher.decrypt(expected, 0, expected.length, key);
+            for (split = 0; split <= bytes.length; split += 13)
+            {
+                parts = bytes.clone();
+                splitSum = RotatingXorCipher.decrypt(parts, 0, split, key);
+                splitSum += RotatingXorCipher.decrypt(parts, split,
+                    parts.length - split, RotatingXorCipher.nextKey(key, split));
+                assertEquals(sum, splitSum);
+                assertTrue(Arrays.equals(expected, parts));
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game.blocks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import de.ailis.wlandsuite.game.parts.BattleStrings;
+import de.ailis.wlandsuite.game.parts.Info;
+import de.ailis.wlandsuite.game.parts.Monsters;
+import de.ailis.wlandsuite.game.parts.NPCs;
+import de.ailis.wlandsuite.game.parts.Strings;
+import de.ailis.wlandsuite.game.parts.TileMap;
+import de.ailis.wlandsuite.io.BufferSeekableInputStream;
+
+
+/**
+ * Tests reading and writing MSQ map blocks with the GameMap class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class GameMapTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(GameMapTest.class);
+    }
+
+
+    /**
+     * Writes the map as an MSQ block.
+     *
+     * @param map
+     *            The map to write
+     * @return The MSQ block
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private byte[] write(final GameMap map) throws IOException
+    {
+        ByteArrayOutputStream output;
+
+        output = new ByteArrayOutputStream();
+        map.write(output, 0);
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Reads the map from an MSQ block.
+     *
+     * @param block
+     *            The MSQ block
+     * @return The map
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private GameMap read(final byte[] block) throws IOException
+    {
+        return GameMap.read(new BufferSeekableInputStream(ByteBuffer
+            .wrap(block)), block.length);
+    }
+
+
+    /**
+     * Tests reading a 64x64 map. Its encrypted part is larger than the part
+     * which is decrypted to determine the map size, so the rest of the
+     * encrypted part is decrypted afterwards.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadLarge() throws IOException
+    {
+        GameMap map;
+        InputStream stream;
+        byte[] block;
+
+        stream = getClass().getClassLoader().getResourceAsStream("map/test");
+        try
+        {
+            map = GameMap.readHacked(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+        block = write(map);
+
+        map = read(block);
+        assertEquals(64, map.getMapSize());
+        assertEquals(block.length, map.getMsqSize());
+        assertTrue(Arrays.equals(block, write(map)));
+    }
+
+
+    /**
+     * Tests reading 32x32 maps. Their whole MSQ block is smaller than the
+     * part which is decrypted to determine the map size, so the unencrypted
+     * strings and the tile map must be encrypted again after sniffing. The
+     * tile map offset is varied so the tile map header is found at each
+     * position within an eight byte word.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadSmall() throws IOException
+    {
+        GameMap map;
+        Strings strings;
+        byte[] block;
+
+        for (int tilemapOffset = 2000; tilemapOffset < 2008; tilemapOffset++)
+        {
+            map = new GameMap(32, 3000, tilemapOffset);
+            map.setInfo(new Info());
+            map.setBattleStrings(new BattleStrings());
+            map.setNpcs(new NPCs());
+            map.setMonsters(new Monsters());
+            strings = new Strings();
+            strings.add("Unencrypted string");
+            map.setStrings(strings);
+            map.setTileMap(new TileMap(32));
+            block = write(map);
+            assertEquals(3000, block.length);
+
+            map = read(block);
+            assertEquals(32, map.getMapSize());
+            assertEquals(tilemapOffset, map.getTilemapOffset());
+            assertEquals("Unencrypted string", map.getStrings().get(0));
+            assertTrue(Arrays.equals(block, write(map)));
+        }
+    }
+}
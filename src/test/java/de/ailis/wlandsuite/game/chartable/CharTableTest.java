@@ -0,0 +1,135 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game.chartable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the CharTable and StringCodec classes
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class CharTableTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(CharTableTest.class);
+    }
+
+
+    /**
+     * Tests the order and the reverse index of a new char table.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testFinish() throws IOException
+    {
+        CharTable charTable;
+        ByteArrayOutputStream stream;
+        byte[] bytes;
+
+        charTable = new CharTable();
+        charTable.add("Abba cd");
+        charTable.add(0);
+        stream = new ByteArrayOutputStream();
+        charTable.write(stream);
+        bytes = stream.toByteArray();
+        assertEquals(60, bytes.length);
+
+        // Sorted by frequency, same frequencies in order of appearance
+        assertEquals('a', bytes[0]);
+        assertEquals('b', bytes[1]);
+        assertEquals(' ', bytes[2]);
+        assertEquals('c', bytes[3]);
+        assertEquals('d', bytes[4]);
+        assertEquals(0, bytes[5]);
+        assertEquals(0x7f, bytes[6]);
+        assertEquals(0x7f, bytes[59]);
+
+        assertEquals(1, charTable.getIndex('b'));
+        assertEquals(5, charTable.getIndex(0));
+        assertEquals(6, charTable.getIndex(0x7f));
+        assertEquals(-1, charTable.getIndex('z'));
+        assertEquals('d', charTable.getCharacter(4));
+    }
+
+
+    /**
+     * Tests decoding strings which were encoded with upper case and high
+     * characters.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testDecode() throws IOException
+    {
+        CharTable charTable;
+        ByteArrayOutputStream stream;
+        StringCodec codec;
+        List<String> strings;
+        byte[] bytes;
+
+        // A char table where 'x' is in the upper half of the table
+        stream = new ByteArrayOutputStream();
+        stream.write(0);
+        stream.write('b');
+        for (int i = 2; i < 60; i++)
+        {
+            stream.write(i == 31 ? 'x' : '0' + i % 10);
+        }
+        charTable = new CharTable(new ByteArrayInputStream(stream
+            .toByteArray()));
+        assertEquals(31, charTable.getIndex('x'));
+
+        // "bX" as 5 bit symbols in reversed bit order: b (1), upper (0x1e),
+        // high (0x1f), x (1), end (0), followed by three empty strings
+        bytes = new byte[] { (byte) 0xc1, (byte) 0xff, 0, 0, 0, 0 };
+        codec = new StringCodec(charTable);
+        strings = new ArrayList<String>();
+        codec.decodeGroup(bytes, 0, bytes.length - 1, strings);
+        assertEquals(4, strings.size());
+        assertEquals("bX", strings.get(0));
+        assertEquals("", strings.get(3));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.game.parts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.dom4j.Element;
+
+import de.ailis.wlandsuite.common.exceptions.GameException;
+import de.ailis.wlandsuite.io.SeekableInputStream;
+import de.ailis.wlandsuite.io.SeekableOutputStream;
+
+
+/**
+ * Tests the TileMap class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class TileMapTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(TileMapTest.class);
+    }
+
+
+    /**
+     * Tests the row and region copy methods.
+     */
+
+    public void testRegion()
+    {
+        TileMap tileMap;
+        byte[] bytes;
+
+        tileMap = new TileMap(32);
+        assertEquals(32, tileMap.getMapSize());
+        tileMap.setTile(31, 2, 0xfe);
+        assertEquals(0xfe, tileMap.getTile(31, 2));
+
+        bytes = new byte[33];
+        tileMap.getRow(2, bytes, 1);
+        assertEquals((byte) 0xfe, bytes[32]);
+
+        bytes = new byte[] { 1, 2, 3, 4, 5, 6 };
+        tileMap.setRegion(4, 5, 3, 2, bytes, 0);
+        assertEquals(1, tileMap.getTile(4, 5));
+        assertEquals(3, tileMap.getTile(6, 5));
+        assertEquals(4, tileMap.getTile(4, 6));
+        assertEquals(6, tileMap.getTile(6, 6));
+        assertEquals(0, tileMap.getTile(7, 5));
+
+        bytes = new byte[4];
+        tileMap.getRegion(5, 5, 2, 2, bytes, 0);
+        assertEquals(2, bytes[0]);
+        assertEquals(3, bytes[1]);
+        assertEquals(5, bytes[2]);
+        assertEquals(6, bytes[3]);
+
+        try
+        {
+            tileMap.getRegion(31, 0, 2, 1, bytes, 0);
+            fail("Expected IndexOutOfBoundsException");
+        }
+        catch (final IndexOutOfBoundsException e)
+        {
+            // Expected
+        }
+    }
+
+
+    /**
+     * Tests writing and reading a compressed tile map.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testCompression() throws IOException
+    {
+        TileMap tileMap, read;
+        SeekableOutputStream output;
+        ByteArrayOutputStream bytes;
+
+        tileMap = new TileMap(64);
+        for (int y = 0; y < 64; y++)
+        {
+            for (int x = 0; x < 64; x++)
+            {
+                tileMap.setTile(x, y, (x * y) % 13 + (x == y ? 200 : 0));
+            }
+        }
+        bytes = new ByteArrayOutputStream();
+        output = new SeekableOutputStream(bytes);
+        tileMap.write(output, true);
+        output.close();
+
+        read = TileMap.read(new SeekableInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())), 0);
+        assertEquals(64, read.getMapSize());
+        for (int y = 0; y < 64; y++)
+        {
+            for (int x = 0; x < 64; x++)
+            {
+                assertEquals(tileMap.getTile(x, y), read.getTile(x, y));
+            }
+        }
+    }
+
+
+    /**
+     * Tests converting a tile map to XML and back.
+     */
+
+    public void testXml()
+    {
+        TileMap tileMap, read;
+        Element element;
+        String text;
+
+        tileMap = new TileMap(32);
+        tileMap.setTile(0, 0, 0xab);
+        tileMap.setTile(1, 0, 0x0f);
+        tileMap.setTile(31, 31, 0xff);
+        element = tileMap.toXml(0);
+        text = element.getTextTrim();
+        assertTrue(text.startsWith("ab 0f .. .."));
+        assertTrue(text.endsWith(".. ff"));
+
+        read = TileMap.read(element, 32, 0);
+        for (int y = 0; y < 32; y++)
+        {
+            for (int x = 0; x < 32; x++)
+            {
+                assertEquals(tileMap.getTile(x, y), read.getTile(x, y));
+            }
+        }
+
+        element.setText(text.replace("0f", "0g"));
+        try
+        {
+            TileMap.read(element, 32, 0);
+            fail("Expected GameException");
+        }
+        catch (final GameException e)
+        {
+            assertEquals("Illegal data in tile map at y=0 x=1", e
+                .getMessage());
+        }
+
+        element.setText(text.substring(0, text.length() - 6));
+        try
+        {
+            TileMap.read(element, 32, 0);
+            fail("Expected GameException");
+        }
+        catch (final GameException e)
+        {
+            assertEquals("Tile map is corrupt: 2 bytes missing", e
+                .getMessage());
+        }
+    }
+}
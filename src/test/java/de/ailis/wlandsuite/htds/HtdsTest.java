@@ -140,4 +140,33 @@ public class HtdsTest extends WSTestCase
         assertEquals(new File("src/test/resources/htds/test.htds"), stream
             .toByteArray());
     }
+
+
+    /**
+     * Tests accessing the tiles of a HTDS through the tile atlas and writing
+     * it again without converting the tiles to pictures.
+     * 
+     * @throws IOException When file operation fails.
+     */
+
+    public void testAtlas() throws IOException
+    {
+        File file;
+        Htds htds;
+        HtdsTileset tileset;
+        ByteArrayOutputStream stream;
+
+        file = new File("src/test/resources/htds/test.htds");
+        htds = Htds.read(new FileInputStream(file));
+        tileset = htds.getTilesets().get(2);
+        assertEquals(3, tileset.getTileCount());
+        assertTrue(tileset.getTile(2).isReadOnly());
+        assertEquals(2 * 128, tileset.getTile(2).getOffset());
+        assertEquals(new File("src/test/resources/htds/test/002/001.png"),
+            tileset.getTile(1));
+
+        stream = new ByteArrayOutputStream();
+        htds.write(stream);
+        assertEquals(file, stream.toByteArray());
+    }
 }
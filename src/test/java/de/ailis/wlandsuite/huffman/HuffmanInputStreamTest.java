@@ -23,6 +23,8 @@
 
 package de.ailis.wlandsuite.huffman;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -95,4 +97,59 @@ public class HuffmanInputStreamTest extends TestCase
             compressedStream.close();
         }
     }
+
+
+    /**
+     * Tests reading huffman data with codes which are longer than the primary
+     * decode table. Also checks that the stream doesn't read more bytes from
+     * the underlying stream than needed.
+     *
+     * @throws IOException When file operation fails.
+     */
+
+    public void testReadingLongCodes() throws IOException
+    {
+        ByteArrayOutputStream byteStream;
+        HuffmanOutputStream huffmanOutputStream;
+        InputStream compressedStream;
+        InputStream huffmanStream;
+        byte[] data;
+        int a, b, tmp, pos;
+
+        // Build data with fibonacci distributed payloads which results in a
+        // very deep huffman tree
+        data = new byte[75024];
+        pos = 0;
+        a = 1;
+        b = 1;
+        for (int i = 0; i < 23; i++)
+        {
+            for (int j = 0; j < a; j++)
+            {
+                data[pos++] = (byte) (i * 11);
+            }
+            tmp = a + b;
+            a = b;
+            b = tmp;
+        }
+        assertEquals(data.length, pos);
+
+        // Encode the data and append a trailing byte
+        byteStream = new ByteArrayOutputStream();
+        huffmanOutputStream = new HuffmanOutputStream(byteStream,
+            HuffmanTree.create(data));
+        huffmanOutputStream.write(data);
+        huffmanOutputStream.flush();
+        byteStream.write(0x42);
+
+        // Decode the data and check the trailing byte
+        compressedStream = new ByteArrayInputStream(byteStream.toByteArray());
+        huffmanStream = new HuffmanInputStream(compressedStream);
+        for (int i = 0; i < data.length; i++)
+        {
+            assertEquals(data[i] & 0xff, huffmanStream.read());
+        }
+        assertEquals(0x42, compressedStream.read());
+        assertEquals(-1, compressedStream.read());
+    }
 }
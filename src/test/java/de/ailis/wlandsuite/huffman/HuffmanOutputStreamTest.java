@@ -142,4 +142,79 @@ public class HuffmanOutputStreamTest extends TestCase
             testStream1.close();
         }
     }
+
+
+    /**
+     * Tests writing of huffman compressed data with a single bulk write.
+     *
+     * @throws IOException When file operation fails.
+     */
+
+    public void testBulkWriting() throws IOException
+    {
+        HuffmanTree tree;
+        InputStream stream;
+        ByteArrayOutputStream dataStream;
+        OutputStream huffmanStream;
+        byte[] decoded, encoded, testData;
+
+        // Read the decoded and the encoded test data
+        stream = getClass().getResourceAsStream("/huffman/decoded.dat");
+        try
+        {
+            decoded = readFully(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+        stream = getClass().getResourceAsStream("/huffman/encoded.dat");
+        try
+        {
+            encoded = readFully(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+        tree = HuffmanTree.load(new ByteArrayInputStream(encoded));
+
+        // Compress the data with a single bulk write
+        dataStream = new ByteArrayOutputStream();
+        huffmanStream = new HuffmanOutputStream(dataStream, tree);
+        huffmanStream.write(decoded, 0, decoded.length);
+        huffmanStream.flush();
+        testData = dataStream.toByteArray();
+
+        assertEquals(18432, decoded.length);
+        assertEquals(9522, testData.length);
+        for (int i = 0; i < testData.length; i++)
+        {
+            assertEquals(encoded[i], testData[i]);
+        }
+    }
+
+
+    /**
+     * Reads all bytes from the specified stream.
+     *
+     * @param stream
+     *            The stream to read from
+     * @return The read bytes
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    private byte[] readFully(final InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bytes;
+        int b;
+
+        bytes = new ByteArrayOutputStream();
+        while ((b = stream.read()) != -1)
+        {
+            bytes.write(b);
+        }
+        return bytes.toByteArray();
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * $Id$
+ * Copyright (c) 2006 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.image;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import de.ailis.wlandsuite.test.WSTestCase;
+
+
+/**
+ * Tests the PackedBitmap class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PackedBitmapTest extends WSTestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(PackedBitmapTest.class);
+    }
+
+
+    /**
+     * Tests reading and writing pixels.
+     */
+
+    public void testPixels()
+    {
+        PackedBitmap bitmap;
+
+        bitmap = new PackedBitmap(3, 2, 4);
+        assertEquals(2, bitmap.getRowSize());
+        bitmap.setPixel(0, 0, 1);
+        bitmap.setPixel(1, 0, 15);
+        bitmap.setPixel(2, 1, 7);
+        assertEquals(1, bitmap.getPixel(0, 0));
+        assertEquals(15, bitmap.getPixel(1, 0));
+        assertEquals(7, bitmap.getPixel(2, 1));
+        assertEquals(0x1f, bitmap.getData()[0] & 0xff);
+        assertEquals(0x70, bitmap.getData()[3] & 0xff);
+
+        bitmap = new PackedBitmap(9, 2, 1);
+        assertEquals(2, bitmap.getRowSize());
+        bitmap.setPixel(0, 0, 1);
+        bitmap.setPixel(8, 1, 1);
+        assertEquals(1, bitmap.getPixel(0, 0));
+        assertEquals(0, bitmap.getPixel(1, 0));
+        assertEquals(1, bitmap.getPixel(8, 1));
+        assertEquals(0x80, bitmap.getData()[0] & 0xff);
+        assertEquals(0x80, bitmap.getData()[3] & 0xff);
+    }
+
+
+    /**
+     * Tests the read-only view.
+     */
+
+    public void testReadOnly()
+    {
+        PackedBitmap bitmap, view;
+
+        bitmap = new PackedBitmap(2, 2, 4);
+        view = bitmap.asReadOnly();
+        assertTrue(view.isReadOnly());
+        assertFalse(bitmap.isReadOnly());
+        bitmap.setPixel(1, 1, 5);
+        assertEquals(5, view.getPixel(1, 1));
+        try
+        {
+            view.setPixel(0, 0, 1);
+            fail("Read-only bitmap was modified");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+        assertFalse(view.copy().isReadOnly());
+        assertEquals(bitmap, view.copy());
+    }
+
+
+    /**
+     * Tests drawing a bitmap into another bitmap.
+     */
+
+    public void testDraw()
+    {
+        PackedBitmap bitmap, tile;
+
+        tile = new PackedBitmap(2, 2, 4);
+        tile.setPixel(0, 0, 3);
+        tile.setPixel(1, 1, 9);
+
+        bitmap = new PackedBitmap(5, 4, 4);
+        bitmap.draw(tile, 2, 1);
+        assertEquals(3, bitmap.getPixel(2, 1));
+        assertEquals(9, bitmap.getPixel(3, 2));
+        bitmap.draw(tile, 3, 2);
+        assertEquals(3, bitmap.getPixel(3, 2));
+        assertEquals(9, bitmap.getPixel(4, 3));
+        assertEquals(0, bitmap.getPixel(0, 0));
+    }
+
+
+    /**
+     * Tests the content based equality.
+     */
+
+    public void testEquals()
+    {
+        PackedBitmap a, b;
+        byte[] data;
+
+        a = new PackedBitmap(3, 1, 4);
+        a.setPixel(2, 0, 4);
+        data = new byte[] { 0x7f, 0x00, 0x4f };
+        b = new PackedBitmap(data, 1, 3, 1, 4);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.setPixel(0, 0, 1);
+        assertFalse(a.equals(b));
+        assertFalse(a.equals(new PackedBitmap(3, 1, 1)));
+    }
+
+
+    /**
+     * Tests converting a bitmap into an image and back.
+     */
+
+    public void testImage()
+    {
+        PackedBitmap bitmap;
+        PaletteImage image;
+
+        bitmap = new PackedBitmap(5, 3, 4);
+        bitmap.setPixel(4, 2, 12);
+        image = bitmap.toImage();
+        assertTrue(image instanceof EgaImage);
+        assertEquals(12, image.getPixel(4, 2));
+        assertEquals(bitmap, new PackedBitmap(image, 4));
+
+        bitmap = new PackedBitmap(10, 2, 1);
+        bitmap.setPixel(9, 1, 1);
+        image = bitmap.toImage();
+        assertTrue(image instanceof BwImage);
+        assertEquals(1, image.getPixel(9, 1));
+        assertEquals(bitmap, new PackedBitmap(image, 1));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the BitInputStream class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class BitInputStreamTest extends TestCase
+{
+    /** The test data */
+    private static final byte[] DATA = { (byte) 0xb4, (byte) 0x3c,
+        (byte) 0xf1, (byte) 0x08, (byte) 0x97, (byte) 0x6e };
+
+
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(BitInputStreamTest.class);
+    }
+
+
+    /**
+     * Tests reading bits with the most significant bit first.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadBits() throws IOException
+    {
+        BitInputStream stream;
+
+        stream = new BitInputStreamWrapper(new ByteArrayInputStream(DATA));
+        assertEquals(1, stream.readBit());
+        assertEquals(0x34, stream.readBits(7, false));
+        assertEquals(0x3cf, stream.readBits(12, false));
+        assertEquals(0x108976e, stream.readBits(28, false));
+        assertEquals(-1, stream.readBit());
+    }
+
+
+    /**
+     * Tests reading bits in reversed order.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadReversedBits() throws IOException
+    {
+        BitInputStream stream;
+
+        stream = new BitInputStreamWrapper(new ByteArrayInputStream(DATA));
+        assertEquals(0x14, stream.readBits(5, true));
+        assertEquals(0x1e5, stream.readBits(9, true));
+        assertEquals(0xba5c23c4, stream.readBits(32, true));
+        assertEquals(-1, stream.readBits(3, true));
+    }
+
+
+    /**
+     * Tests reading bytes and words from a not byte-aligned stream.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testReadUnaligned() throws IOException
+    {
+        BitInputStream stream;
+
+        stream = new BitInputStreamWrapper(new ByteArrayInputStream(DATA));
+        assertEquals(0xb, stream.readBits(4, false));
+        assertEquals(0x43, stream.readByte());
+        assertEquals(0x10cf, stream.readWord());
+        assertEquals(4, stream.getBitsLeft());
+        assertEquals(0x89, stream.readByte());
+        assertEquals(0x76e, stream.readBits(12, false));
+        assertEquals(0, stream.getBitsLeft());
+    }
+
+
+    /**
+     * Tests that only the bytes containing the requested bits are read from
+     * the underlying stream.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testNoReadAhead() throws IOException
+    {
+        InputStream input;
+        BitInputStream stream;
+
+        input = new ByteArrayInputStream(DATA);
+        stream = new BitInputStreamWrapper(input);
+        assertEquals(0xb43c, stream.readBits(16, false));
+        assertEquals(4, input.available());
+        assertEquals(0xf, stream.readBits(4, false));
+        assertEquals(3, input.available());
+        assertEquals(0x08, input.read());
+        assertEquals(0x1, stream.readBits(4, false));
+        assertEquals(0x97, stream.readByte());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the MappedSeekableInputStream class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class MappedSeekableInputStreamTest extends TestCase
+{
+    /** The test data */
+    private byte[] data;
+
+    /** The test file */
+    private File file;
+
+
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(MappedSeekableInputStreamTest.class);
+    }
+
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        OutputStream stream;
+
+        this.data = new byte[1000];
+        new Random(42).nextBytes(this.data);
+        this.file = File.createTempFile("wlandsuite", ".dat");
+        stream = new FileOutputStream(this.file);
+        try
+        {
+            stream.write(this.data);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+
+    @Override
+    protected void tearDown()
+    {
+        this.file.delete();
+    }
+
+
+    /**
+     * Tests that file streams are memory-mapped and other streams are cached.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testCreate() throws IOException
+    {
+        FileInputStream input;
+
+        input = new FileInputStream(this.file);
+        try
+        {
+            assertTrue(SeekableInputStream.create(input)
+                instanceof MappedSeekableInputStream);
+        }
+        finally
+        {
+            input.close();
+        }
+        assertFalse(SeekableInputStream.create(new ByteArrayInputStream(
+            this.data)) instanceof MappedSeekableInputStream);
+    }
+
+
+    /**
+     * Tests that the mapped stream reads the same data as the caching stream.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testRead() throws IOException
+    {
+        FileInputStream input;
+        SeekableInputStream mapped, cached;
+        byte[] bytes1, bytes2;
+
+        input = new FileInputStream(this.file);
+        try
+        {
+            input.skip(10);
+            mapped = SeekableInputStream.create(input);
+            cached = new SeekableInputStream(new ByteArrayInputStream(
+                this.data, 10, this.data.length - 10));
+            assertEquals(cached.readWord(), mapped.readWord());
+            assertEquals(cached.readBits(5, false), mapped.readBits(5, false));
+            assertEquals(cached.readInt(), mapped.readInt());
+            assertEquals(cached.readBits(11, true), mapped.readBits(11, true));
+            assertEquals(cached.tell(), mapped.tell());
+
+            mapped.seek(500);
+            cached.seek(500);
+            bytes1 = new byte[100];
+            bytes2 = new byte[100];
+            assertEquals(100, mapped.read(bytes1));
+            assertEquals(100, cached.read(bytes2));
+            assertTrue(Arrays.equals(bytes2, bytes1));
+
+            mapped.seek(3);
+            cached.seek(3);
+            assertEquals(cached.readSignedInt(), mapped.readSignedInt());
+
+            mapped.seek(985);
+            assertEquals(5, mapped.read(bytes1));
+            assertEquals(-1, mapped.read(bytes1));
+            assertEquals(-1, mapped.read());
+            assertEquals(990, mapped.tell());
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+}
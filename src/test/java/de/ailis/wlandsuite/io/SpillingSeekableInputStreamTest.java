@@ -0,0 +1,153 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the SpillingSeekableInputStream class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class SpillingSeekableInputStreamTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(SpillingSeekableInputStreamTest.class);
+    }
+
+
+    /**
+     * Tests reading and seeking with a window which is much smaller than the
+     * data.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testSeek() throws IOException
+    {
+        SeekableInputStream stream;
+        Random random;
+        byte[] data, bytes;
+        int position, len;
+
+        random = new Random(7);
+        data = new byte[5000];
+        random.nextBytes(data);
+        stream = SeekableInputStream.create(new ByteArrayInputStream(data), 64);
+        assertTrue(stream instanceof SpillingSeekableInputStream);
+        try
+        {
+            // Read everything to spill most of the data
+            bytes = new byte[data.length];
+            assertEquals(data.length, stream.read(bytes));
+            assertTrue(Arrays.equals(data, bytes));
+            assertEquals(-1, stream.read());
+
+            // Read from random positions
+            for (int i = 0; i < 200; i++)
+            {
+                position = random.nextInt(data.length);
+                stream.seek(position);
+                assertEquals(position, stream.tell());
+                if (i % 2 == 0)
+                {
+                    len = Math.min(random.nextInt(300), data.length - position);
+                    for (int j = 0; j < len; j++)
+                    {
+                        assertEquals(data[position + j] & 0xff, stream.read());
+                    }
+                }
+                else
+                {
+                    len = Math.min(random.nextInt(300) + 1, data.length
+                        - position);
+                    bytes = new byte[len];
+                    assertEquals(len, stream.read(bytes));
+                    assertTrue(Arrays.equals(Arrays.copyOfRange(data,
+                        position, position + len), bytes));
+                }
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+
+    /**
+     * Tests seeking forward into data which has not been read yet.
+     *
+     * @throws IOException
+     *             When file operation fails.
+     */
+
+    public void testSeekForward() throws IOException
+    {
+        SeekableInputStream stream;
+        byte[] data;
+
+        data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        stream = new SpillingSeekableInputStream(
+            new ByteArrayInputStream(data), 16);
+        try
+        {
+            stream.seek(700);
+            assertEquals(700 & 0xff, stream.read());
+            assertEquals(((702 & 0xff) << 8) | (701 & 0xff), stream
+                .readWord());
+            stream.seek(5);
+            assertEquals(5, stream.read());
+            stream.seek(2000);
+            assertEquals(1000, stream.tell());
+            assertEquals(-1, stream.read());
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+}
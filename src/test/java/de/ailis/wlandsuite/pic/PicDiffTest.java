@@ -0,0 +1,115 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.pic;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the PicDiff class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PicDiffTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(PicDiffTest.class);
+    }
+
+
+    /**
+     * Tests finding the first changed byte.
+     */
+
+    public void testFindChange()
+    {
+        byte[] bytes1, bytes2;
+
+        bytes1 = new byte[21];
+        bytes2 = new byte[21];
+        assertEquals(21, PicDiff.findChange(bytes1, bytes2, 0, 21));
+        bytes2[19] = 1;
+        assertEquals(19, PicDiff.findChange(bytes1, bytes2, 0, 21));
+        assertEquals(18, PicDiff.findChange(bytes1, bytes2, 0, 18));
+        bytes2[11] = 1;
+        assertEquals(11, PicDiff.findChange(bytes1, bytes2, 3, 21));
+        assertEquals(19, PicDiff.findChange(bytes1, bytes2, 12, 21));
+    }
+
+
+    /**
+     * Tests building the XOR runs used in PICS animations.
+     */
+
+    public void testGetXorRuns()
+    {
+        Pic from, to;
+
+        from = new Pic(96, 84);
+        to = new Pic(96, 84);
+        assertEquals(0, PicDiff.getXorRuns(from, to).length);
+
+        // Two changes separated by one unchanged byte are merged, a third
+        // change two bytes further starts a new run
+        to.setPixel(2, 0, 0xa);
+        to.setPixel(7, 0, 0x5);
+        to.setPixel(12, 0, 0x3);
+        assertTrue(Arrays.equals(new byte[] { 0x01, 0x20, (byte) 0xa0, 0x00,
+            0x05, 0x06, 0x00, 0x30 }, PicDiff.getXorRuns(from, to)));
+    }
+
+
+    /**
+     * Tests building the blocks used in CPA animations.
+     */
+
+    public void testGetBlockRuns()
+    {
+        Pic base, frame, last;
+
+        base = new Pic(288, 128);
+        frame = new Pic(288, 128);
+        last = new Pic(288, 128);
+        frame.setPixel(9, 1, 0xf);
+        last.setPixel(0, 0, 0x1);
+        assertTrue(Arrays.equals(new byte[] { 41, 0, 0x0f, 0x00, 0x00, 0x00 },
+            PicDiff.getBlockRuns(base, frame, null)));
+        assertTrue(Arrays.equals(new byte[] { 0, 0, 0x00, 0x00, 0x00, 0x00,
+            41, 0, 0x0f, 0x00, 0x00, 0x00 }, PicDiff.getBlockRuns(base, frame,
+            last)));
+    }
+}
@@ -27,11 +27,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import de.ailis.wlandsuite.image.PackedBitmap;
 import de.ailis.wlandsuite.test.WSTestCase;
 
 
@@ -92,4 +94,94 @@ public class PicTest extends WSTestCase
         assertEquals(new File("src/test/resources/pic/test.pic"), stream
             .toByteArray());
     }
+
+
+    /**
+     * Tests setting the pixels of a PIC from encoded bytes.
+     * 
+     * @throws IOException When file operation fails.
+     */
+
+    public void testSetBytes() throws IOException
+    {
+        Pic source, pic;
+        byte[] bytes;
+
+        source = new Pic(ImageIO.read(new File("src/test/resources/pic/test.png")));
+        bytes = new byte[source.getWidth() / 2 * source.getHeight() + 3];
+        source.getBytes(bytes, 3, true);
+        pic = new Pic(source.getWidth(), source.getHeight());
+        pic.setBytes(bytes, 3, true);
+
+        assertEquals(new File("src/test/resources/pic/test.png"), pic);
+        assertEquals(new File("src/test/resources/pic/test.pic"), pic
+            .getBytes());
+    }
+
+
+    /**
+     * Tests that patches outside of the picture data are rejected.
+     */
+
+    public void testPatchBounds()
+    {
+        Pic pic;
+
+        pic = new Pic(4, 2);
+        pic.xorBytes(2, new int[] { 0x12, 0x34 });
+        pic.putBytes(0, new byte[] { 0x56 }, 0, 1);
+        assertEquals(0x5, pic.getPixel(0, 0));
+        assertEquals(0x4, pic.getPixel(3, 1));
+        try
+        {
+            pic.xorBytes(3, new int[] { 1, 2 });
+            fail("XOR bytes exceeding the picture were accepted");
+        }
+        catch (final IndexOutOfBoundsException e)
+        {
+            // Expected
+        }
+        try
+        {
+            pic.putBytes(-1, new byte[] { 1 }, 0, 1);
+            fail("Bytes before the picture were accepted");
+        }
+        catch (final IndexOutOfBoundsException e)
+        {
+            // Expected
+        }
+        assertEquals(0x3, pic.getPixel(2, 1));
+    }
+
+
+    /**
+     * Tests reading and writing a PIC as packed bitmap.
+     * 
+     * @throws IOException When file operation fails.
+     */
+
+    public void testBitmap() throws IOException
+    {
+        File file;
+        PackedBitmap bitmap;
+        ByteArrayOutputStream stream;
+        InputStream input;
+
+        file = new File("src/test/resources/pic/test.pic");
+        bitmap = new PackedBitmap(288, 128, 4);
+        input = new FileInputStream(file);
+        try
+        {
+            Pic.readBitmap(input, bitmap, true);
+        }
+        finally
+        {
+            input.close();
+        }
+        assertEquals(new File("src/test/resources/pic/test.png"), bitmap);
+
+        stream = new ByteArrayOutputStream();
+        Pic.fromBitmap(bitmap).write(stream);
+        assertEquals(file, stream.toByteArray());
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.pic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the VerticalXorCodec class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class VerticalXorCodecTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(VerticalXorCodecTest.class);
+    }
+
+
+    /**
+     * Tests decoding VXor encoded data.
+     *
+     * @throws IOException When file operation fails.
+     */
+
+    public void testDecode() throws IOException
+    {
+        byte[] encoded, decoded;
+
+        encoded = readResource("vxor/encoded.pic");
+        decoded = readResource("vxor/decoded.dat");
+        assertEquals(18432, encoded.length);
+        VerticalXorCodec.decode(encoded, 0, 144, 128);
+        assertTrue(Arrays.equals(decoded, encoded));
+    }
+
+
+    /**
+     * Tests encoding data.
+     *
+     * @throws IOException When file operation fails.
+     */
+
+    public void testEncode() throws IOException
+    {
+        byte[] encoded, decoded;
+
+        encoded = readResource("vxor/encoded.pic");
+        decoded = readResource("vxor/decoded.dat");
+        VerticalXorCodec.encode(decoded, 0, 144, 128);
+        assertTrue(Arrays.equals(encoded, decoded));
+    }
+
+
+    /**
+     * Reads the specified resource.
+     *
+     * @param name
+     *            The resource name
+     * @return The resource bytes
+     * @throws IOException When file operation fails.
+     */
+
+    private byte[] readResource(final String name) throws IOException
+    {
+        InputStream stream;
+        ByteArrayOutputStream bytes;
+        int b;
+
+        stream = getClass().getClassLoader().getResourceAsStream(name);
+        try
+        {
+            bytes = new ByteArrayOutputStream();
+            while ((b = stream.read()) != -1)
+            {
+                bytes.write(b);
+            }
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+}
@@ -96,4 +96,52 @@ public class VerticalXorInputStreamTest extends TestCase
             vxorStream.close();
         }
     }
+
+
+    /**
+     * Tests reading VXor encoded data in chunks which are not aligned to the
+     * rows.
+     *
+     * @throws IOException When file operation fails.
+     */
+
+    public void testBulkReading() throws IOException
+    {
+        int count, read;
+        byte[] buffer;
+        InputStream picStream;
+        InputStream vxorStream;
+        InputStream testStream;
+
+        picStream = getClass().getClassLoader().getResourceAsStream(
+            "vxor/encoded.pic");
+        vxorStream = new VerticalXorInputStream(picStream, 288);
+        try
+        {
+            testStream = getClass().getClassLoader().getResourceAsStream(
+                "vxor/decoded.dat");
+            try
+            {
+                count = 0;
+                buffer = new byte[1000];
+                while ((read = vxorStream.read(buffer, 1, 999)) != -1)
+                {
+                    for (int i = 1; i <= read; i++)
+                    {
+                        count++;
+                        assertEquals(testStream.read(), buffer[i] & 0xff);
+                    }
+                }
+                assertEquals(18432, count);
+            }
+            finally
+            {
+                testStream.close();
+            }
+        }
+        finally
+        {
+            vxorStream.close();
+        }
+    }
 }
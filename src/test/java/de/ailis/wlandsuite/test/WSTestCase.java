@@ -35,6 +35,7 @@ import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
 
 import junit.framework.TestCase;
+import de.ailis.wlandsuite.image.PackedBitmap;
 
 
 /**
@@ -166,6 +167,23 @@ public abstract class WSTestCase extends TestCase
     }
 
 
+    /**
+     * Compares a bitmap with an image file.
+     * 
+     * @param file
+     *            The image file
+     * @param bitmap
+     *            The bitmap
+     * @throws IOException When file operation fails.
+     */
+
+    public static void assertEquals(final File file, final PackedBitmap bitmap)
+        throws IOException
+    {
+        assertEquals(file, bitmap.toImage());
+    }
+
+
     /**
      * Reads the complete data from the specified input stream into a string and
      * returns it.
@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ * Copyright (C) 2006 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.wlandsuite.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests the LongMap class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class LongMapTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(LongMapTest.class);
+    }
+
+
+    /**
+     * Tests putting and getting values.
+     */
+
+    public void testPutGet()
+    {
+        LongMap<String> map;
+
+        map = new LongMap<String>();
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(0));
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(Long.MIN_VALUE, "min"));
+        assertNull(map.put(Long.MAX_VALUE, "max"));
+        assertNull(map.put(-1, "minus one"));
+        assertEquals("zero", map.get(0));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertEquals("minus one", map.get(-1));
+        assertTrue(map.containsKey(Long.MIN_VALUE));
+        assertFalse(map.containsKey(1));
+
+        assertEquals("zero", map.put(0, "null"));
+        assertEquals("null", map.get(0));
+
+        try
+        {
+            map.put(1, null);
+            fail("Null value was accepted");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Expected
+        }
+        assertFalse(map.containsKey(1));
+    }
+
+
+    /**
+     * Tests keys which only differ in their upper or lower 32 bits. The map
+     * has only eight slots at the start, so many keys share a probe chain
+     * before and after each resize.
+     */
+
+    public void testCollisions()
+    {
+        LongMap<Long> map;
+        long key;
+
+        map = new LongMap<Long>(1);
+        for (int i = 0; i < 64; i++)
+        {
+            key = (long) i << 32 | i;
+            map.put(key, Long.valueOf(key));
+            map.put((long) i << 32, Long.valueOf((long) i << 32));
+            map.put(i, Long.valueOf(i));
+        }
+        for (int i = 0; i < 64; i++)
+        {
+            key = (long) i << 32 | i;
+            assertEquals(Long.valueOf(key), map.get(key));
+            assertEquals(Long.valueOf((long) i << 32), map.get((long) i << 32));
+            assertEquals(Long.valueOf(i), map.get(i));
+        }
+        assertFalse(map.containsKey(64));
+        assertFalse(map.containsKey(64L << 32));
+    }
+
+
+    /**
+     * Tests the map against a HashMap with random keys. The map starts with
+     * the smallest capacity so it is resized many times.
+     */
+
+    public void testResize()
+    {
+        LongMap<Integer> map;
+        Map<Long, Integer> expected;
+        Random random;
+        long key;
+
+        random = new Random(42);
+        map = new LongMap<Integer>(1);
+        expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 20000; i++)
+        {
+            // Every fifth key is a small number which is often put again
+            key = i % 5 == 0 ? random.nextInt(i + 1) : random.nextLong();
+            assertEquals(expected.put(Long.valueOf(key), Integer.valueOf(i)),
+                map.put(key, Integer.valueOf(i)));
+        }
+        for (final Map.Entry<Long, Integer> entry: expected.entrySet())
+        {
+            assertEquals(entry.getValue(), map.get(entry.getKey().longValue()));
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            key = random.nextLong();
+            assertEquals(expected.containsKey(Long.valueOf(key)), map
+                .containsKey(key));
+        }
+    }
+}